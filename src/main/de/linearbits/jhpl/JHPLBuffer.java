@@ -11,8 +11,17 @@
  */
 package de.linearbits.jhpl;
 
+import java.util.Arrays;
+
 /**
- * A simple buffer based on an int array
+ * A simple buffer based on int arrays. The buffer is divided into arrays with a power-of-two number 
+ * of cells, which are addressed by the upper and lower bits of an offset. Only the last array grows
+ * by copying, further arrays are appended without touching existing data. Chunks that are allocated 
+ * never span two arrays.<br>
+ * <br>
+ * Chunks that are released are kept in a list per size and reused by later allocations of the 
+ * same size. The first cell of each released chunk holds the offset of the next chunk in the list. 
+ * As the root page of a trie is stored at offset 0 and never released, 0 terminates a list.
  * 
  * @author Fabian Prasser
  */
@@ -23,49 +32,66 @@ class JHPLBuffer {
     /** Constant*/
     private static final int    INITIAL_CAPACITY   = 2;
 
-    /** Flags */
+    /** Constant: minimal number of bits of an offset that address a cell within an array */
+    private static final int    ARRAY_BITS         = 20;
+    /** Constant: number of cells per cache line */
+    private static final int    LINE_SIZE          = 16;
+
+    /** Flags. In inner pages of a trie, this flag marks subtrees in which all elements are available. */
     static final int            FLAG_AVAILABLE     = -0x1;
     /** Flags */
     static final int            FLAG_NOT_AVAILABLE = 0x0;
 
+    /** Number of bits of an offset that address a cell within an array */
+    private final int           bits;
+    /** Mask for the bits of an offset that address a cell within an array */
+    private final int           mask;
     /** The size of the array nodes */
     private int                 size;
-    /** The array with nodes */
-    int[]                       memory;
+    /** The arrays with nodes. All arrays but the last one have mask + 1 cells. */
+    private int[][]             memory;
+    /** Heads of the lists of released chunks, indexed by size */
+    private int[]               heads;
+    /** The number of cells in released chunks */
+    private int                 released;
 
     /**
-     * Creates a new instance
+     * Creates a new instance, in which chunks of up to the given size can be allocated
+     * @param _size
      */
-    JHPLBuffer(){
-        this.memory = new int[INITIAL_CAPACITY];
+    JHPLBuffer(int _size){
+        this.bits = Math.max(ARRAY_BITS, 32 - Integer.numberOfLeadingZeros(_size - 1));
+        this.mask = (1 << bits) - 1;
+        this.memory = new int[][] { new int[INITIAL_CAPACITY] };
         this.size = 0;
+        this.heads = new int[0];
+        this.released = 0;
     }
     
     /**
-     * Allocates a chunk of the given size
+     * Allocates a chunk of the given size at the end of the buffer
      * @param _size
      * @return
      */
-    int allocate(int _size) {
+    private int append(int _size) {
+
+        // Check
+        if (_size > mask + 1) {
+            throw new IllegalArgumentException("Chunk too large");
+        }
+
+        // Release the remainder of the current array, if the chunk does not fit
+        int remainder = mask + 1 - (size & mask);
+        if (_size > remainder) {
+            ensure(size + remainder);
+            free(size, remainder);
+            size += remainder;
+        }
 
         // Store
         int offset = size;
         size += _size;
-
-        // Check, if we need to allocate more memory
-        if (size > memory.length) {
-            
-            // Compute new length
-            int length = memory.length;
-            while (length < size) {
-                length = (int)((double)length * GROWTH_FACTOR);
-            }
-            
-            // Grow
-            int[] newBuffer = new int[length];
-            System.arraycopy(memory, 0, newBuffer, 0, offset);
-            memory = newBuffer;
-        }
+        ensure(size);
         
         // New memory is in range offset to offset + _size
         // No need to initialize, JVM will initialize with 0x0, which == FLAG_NOT_AVAILABLE
@@ -73,17 +99,147 @@ class JHPLBuffer {
         // Return
         return offset;
     }
+
+    /**
+     * Allocates a chunk of the given size
+     * @param _size
+     * @return
+     */
+    int allocate(int _size) {
+
+        // Reuse a released chunk
+        if (_size < heads.length && heads[_size] != 0) {
+            int offset = heads[_size];
+            heads[_size] = get(offset);
+            released -= _size;
+            int start = offset & mask;
+            Arrays.fill(chunk(offset), start, start + _size, FLAG_NOT_AVAILABLE);
+            return offset;
+        }
+        
+        // Append
+        return append(_size);
+    }
+
+    /**
+     * Allocates a chunk of the given size at the end of the buffer. The chunk starts at a cache line, 
+     * if it would otherwise span more cache lines than needed. Cells that are skipped are released.
+     * @param _size
+     * @return
+     */
+    int allocateAligned(int _size) {
+        int lines = ((size & (LINE_SIZE - 1)) + _size + LINE_SIZE - 1) / LINE_SIZE;
+        if (lines > (_size + LINE_SIZE - 1) / LINE_SIZE) {
+            int padding = LINE_SIZE - (size & (LINE_SIZE - 1));
+            ensure(size + padding);
+            free(size, padding);
+            size += padding;
+        }
+        return append(_size);
+    }
+
+    /**
+     * Returns the capacity in cells
+     * @return
+     */
+    long capacity() {
+        return (long) (memory.length - 1) * (mask + 1) + memory[memory.length - 1].length;
+    }
+
+    /**
+     * Returns the array that contains the given offset
+     * @param offset
+     * @return
+     */
+    int[] chunk(int offset) {
+        return memory[offset >>> bits];
+    }
     
     /**
      * Ensures the given capacity
      * @param size
      */
     void ensure(int size) {
-        if (memory.length < size) {
-            allocate(size - this.size);
+
+        // Check
+        if (size <= capacity()) {
+            return;
+        }
+
+        // Grow the last array, which may have been trimmed
+        int current = memory.length - 1;
+        int[] last = memory[current];
+        if (last.length <= mask) {
+            int required = size - (current << bits);
+            int length = last.length;
+            while (length < required && length <= mask) {
+                length = Math.max(length + 1, (int)((double)length * GROWTH_FACTOR));
+            }
+            memory[current] = Arrays.copyOf(last, Math.min(length, mask + 1));
+        }
+        
+        // Append further arrays
+        int count = ((size - 1) >>> bits) + 1;
+        if (memory.length < count) {
+            int index = memory.length;
+            memory = Arrays.copyOf(memory, count);
+            for (; index < count; index++) {
+                memory[index] = new int[mask + 1];
+            }
         }
     }
     
+    /**
+     * Releases the chunk at the given offset, which has the given size
+     * @param offset
+     * @param _size
+     */
+    void free(int offset, int _size) {
+        if (_size >= heads.length) {
+            heads = Arrays.copyOf(heads, Math.max(_size + 1, heads.length * 2));
+        }
+        set(offset, heads[_size]);
+        heads[_size] = offset;
+        released += _size;
+    }
+
+    /**
+     * Returns the value at the given offset
+     * @param offset
+     * @return
+     */
+    int get(int offset) {
+        return memory[offset >>> bits][offset & mask];
+    }
+
+    /**
+     * Returns a new, empty buffer with the same structure
+     * @return
+     */
+    JHPLBuffer newInstance() {
+        return new JHPLBuffer(mask + 1);
+    }
+
+    /**
+     * Returns the position of the given offset within its array
+     * @param offset
+     * @return
+     */
+    int offset(int offset) {
+        return offset & mask;
+    }
+
+    /**
+     * Replaces the content of this buffer with the given memory, which is completely used
+     * @param memory
+     */
+    void replace(int[] memory) {
+        this.memory = new int[][] { memory };
+        this.size = memory.length;
+        this.heads = new int[0];
+        this.released = 0;
+    }
+
     /**
      * Replaces this buffer with the given buffer
      * @param other
@@ -91,5 +247,54 @@ class JHPLBuffer {
     void replace(JHPLBuffer other) {
         this.memory = other.memory;
         this.size = other.size;
+        this.heads = other.heads;
+        this.released = other.released;
+    }
+
+    /**
+     * Sets the value at the given offset
+     * @param offset
+     * @param value
+     */
+    void set(int offset, int value) {
+        memory[offset >>> bits][offset & mask] = value;
+    }
+
+    /**
+     * Returns the number of cells, including released chunks
+     * @return
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Releases the capacity at the end of the buffer that is not used
+     */
+    void trim() {
+        int index = memory.length - 1;
+        int length = size - (index << bits);
+        if (length < memory[index].length) {
+            memory[index] = Arrays.copyOf(memory[index], length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("[");
+        for (int offset = 0; offset < size; offset++) {
+            builder.append(offset == 0 ? "" : ", ").append(get(offset));
+        }
+        builder.append("]");
+        return builder.toString();
+    }
+
+    /**
+     * Returns the number of cells that are not released
+     * @return
+     */
+    int used() {
+        return size - released;
     }
 }
@@ -11,9 +11,6 @@
  */
 package de.linearbits.jhpl;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * This class implements a builder for nodes in the source space.
  * 
@@ -29,39 +26,27 @@ public class JHPLBuilder<T> {
     private int                     builderIndex;
     /** The number of dimensions*/
     private final int               dimensions;
-    /** The height of each dimension*/
-    private final int[]             heights;
-    /** Map from T to index per dimension*/
-    private final Map<T, Integer>[] indices;
+    /** Codec for elements from the source space*/
+    private final JHPLCodec<T>      codec;
 
     /**
      * Creates a new instance
-     * @param elements
+     * @param array
+     * @param codec
      */
-    @SuppressWarnings("unchecked")
-    JHPLBuilder(int[] array, T[]... elements) {
-        this.dimensions = elements.length;
-        this.indices = new HashMap[elements.length];
-        this.heights = new int[this.dimensions];
-        for (int j = 0; j < elements.length; j++) {
-            T[] dimension = elements[j];
-            heights[j] = elements[j].length;
-            this.indices[j] = new HashMap<T, Integer>(dimension.length);
-            for (int i = 0; i < dimension.length; i++) {
-                this.indices[j].put(dimension[i], i);
-            }
-        }
+    JHPLBuilder(int[] array, JHPLCodec<T> codec) {
+        this.dimensions = codec.getDimensions();
+        this.codec = codec;
         if (array == null) { throw new NullPointerException("Array must not be null"); }
         if (array.length != dimensions) { throw new IllegalArgumentException("Array must have " + dimensions + " slots"); }
         this.builderArray = array;
     }
     /**
      * Creates a new instance
-     * @param elements
+     * @param codec
      */
-    @SafeVarargs
-    JHPLBuilder(T[]... elements) {
-        this(new int[elements.length], elements);
+    JHPLBuilder(JHPLCodec<T> codec) {
+        this(new int[codec.getDimensions()], codec);
     }
 
     /**
@@ -84,8 +69,8 @@ public class JHPLBuilder<T> {
     public JHPLBuilder<T> next(T element) {
         if (element == null) { throw new NullPointerException("Elements must not contain null"); }
         if (builderIndex >= dimensions) { throw new IllegalStateException("Index out of bounds"); }
-        Integer index = indices[builderIndex].get(element);
-        if (index == null || index < 0 || index >= heights[builderIndex]) { throw new IllegalArgumentException("Unknown element: " + element); }
+        int index = codec.encode(builderIndex, element);
+        if (index < 0) { throw new IllegalArgumentException("Unknown element: " + element); }
         builderArray[builderIndex] = index;
         builderIndex++;
         return this;
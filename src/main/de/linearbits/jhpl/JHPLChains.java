@@ -0,0 +1,119 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class lazily generates a symmetric chain decomposition of the lattice, following the construction
+ * by de Bruijn et al. for products of chains. The lattice is built dimension by dimension: the product of
+ * a chain c_0 < ... < c_a with a dimension 0 < ... < b decomposes into min(a, b) + 1 chains, where chain j
+ * consists of (c_0, j), ..., (c_(a-j), j), (c_(a-j), j+1), ..., (c_(a-j), b). A chain of the decomposition is
+ * thus determined by one choice of j per dimension, and the chains are enumerated like an odometer. Chains are
+ * returned as arrays of identifiers, ordered from the lowest to the highest node. The first chain connects the
+ * bottom node with the top node.
+ * 
+ * @author Fabian Prasser
+ */
+class JHPLChains implements Iterator<long[]> {
+
+    /** The height of each dimension */
+    private final int[]    heights;
+    /** Multiplier */
+    private final long[]   multiplier;
+    /** The choice made for each dimension */
+    private final int[]    choices;
+    /** The chains in the product of the first i+1 dimensions */
+    private final long[][] chains;
+    /** Whether there is a next chain */
+    private boolean        hasNext;
+
+    /**
+     * Creates a new instance
+     * @param heights
+     * @param multiplier
+     */
+    JHPLChains(int[] heights, long[] multiplier) {
+        this.heights = heights;
+        this.multiplier = multiplier;
+        this.choices = new int[heights.length];
+        this.chains = new long[heights.length][];
+        this.chains[0] = new long[heights[0]];
+        for (int i = 0; i < heights[0]; i++) {
+            this.chains[0][i] = i * multiplier[0];
+        }
+        this.build(1);
+        this.hasNext = true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public long[] next() {
+        
+        // Check
+        if (!hasNext) {
+            throw new NoSuchElementException();
+        }
+        
+        // Prepare
+        long[] result = chains[chains.length - 1];
+        
+        // Advance
+        int dimension = chains.length - 1;
+        while (dimension > 0 && choices[dimension] == Math.min(chains[dimension - 1].length, heights[dimension]) - 1) {
+            choices[dimension] = 0;
+            dimension--;
+        }
+        if (dimension == 0) {
+            hasNext = false;
+        } else {
+            choices[dimension]++;
+            build(dimension);
+        }
+        
+        // Return
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Builds the chains for all dimensions starting with the given one
+     * @param dimension
+     */
+    private void build(int dimension) {
+        for (; dimension < chains.length; dimension++) {
+            long[] chain = chains[dimension - 1];
+            int a = chain.length - 1;
+            int b = heights[dimension] - 1;
+            int j = choices[dimension];
+            long mult = multiplier[dimension];
+            long[] result = new long[a + b + 1 - 2 * j];
+            int index = 0;
+            for (int x = 0; x <= a - j; x++) {
+                result[index++] = chain[x] + j * mult;
+            }
+            for (int y = j + 1; y <= b; y++) {
+                result[index++] = chain[a - j] + y * mult;
+            }
+            chains[dimension] = result;
+        }
+    }
+}
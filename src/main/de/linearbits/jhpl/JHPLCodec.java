@@ -0,0 +1,392 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class maps elements from the source space to their indices. As the elements of each dimension never
+ * change, a perfect hash table is constructed for each dimension, in which each element can be found with
+ * exactly one probe. Elements are compared by identity first, and by their (cached) hash codes before
+ * calling equals(), which makes interned values and strings cheap to resolve. Dimensions consisting of
+ * Integers or Longs can additionally be resolved from primitive values without boxing. If no perfect hash
+ * function can be found, the class falls back to a hash map for the according dimension.
+ *
+ * @author Fabian Prasser
+ *
+ * @param <T>
+ */
+class JHPLCodec<T> {
+
+    /** Kind of dimension */
+    private static final int        KIND_OBJECT       = 0;
+    /** Kind of dimension */
+    private static final int        KIND_INTEGER      = 1;
+    /** Kind of dimension */
+    private static final int        KIND_LONG         = 2;
+
+    /** Average number of elements per bucket of the perfect hash function */
+    private static final int        BUCKET_SIZE       = 4;
+    /** Maximal displacement tested per bucket of the perfect hash function */
+    private static final int        MAX_DISPLACEMENT  = 1 << 20;
+    /** Maximal size of a direct table, relative to the number of elements */
+    private static final int        MAX_DIRECT_FACTOR = 4;
+    /** Minimal size of a direct table */
+    private static final int        MIN_DIRECT_SIZE   = 64;
+    /** Flag for empty slots */
+    private static final int        EMPTY             = -1;
+
+    /** The number of dimensions */
+    private final int               dimensions;
+    /** Kind of each dimension */
+    private final int[]             kinds;
+    /** Perfect hashing: keys per dimension */
+    private final Object[][]        keys;
+    /** Perfect hashing: hash codes per dimension */
+    private final int[][]           hashes;
+    /** Perfect hashing: indices per dimension */
+    private final int[][]           positions;
+    /** Perfect hashing: primitive keys per dimension, if the dimension consists of Integers or Longs */
+    private final long[][]          numbers;
+    /** Perfect hashing: displacement of each bucket per dimension */
+    private final int[][]           displacements;
+    /** Perfect hashing: mask per dimension */
+    private final int[]             masks;
+    /** Direct tables for dense Integer or Long dimensions */
+    private final int[][]           direct;
+    /** Offsets of the direct tables */
+    private final long[]            directOffsets;
+    /** Fallback for dimensions without a perfect hash function */
+    private final Map<T, Integer>[] fallback;
+
+    /**
+     * Creates a new instance
+     * @param elements
+     */
+    @SuppressWarnings("unchecked")
+    JHPLCodec(T[]... elements) {
+        this.dimensions = elements.length;
+        this.kinds = new int[dimensions];
+        this.keys = new Object[dimensions][];
+        this.hashes = new int[dimensions][];
+        this.positions = new int[dimensions][];
+        this.numbers = new long[dimensions][];
+        this.displacements = new int[dimensions][];
+        this.masks = new int[dimensions];
+        this.direct = new int[dimensions][];
+        this.directOffsets = new long[dimensions];
+        this.fallback = new HashMap[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            this.kinds[i] = getKind(elements[i]);
+            if (!buildPerfectHash(i, elements[i])) {
+                this.fallback[i] = new HashMap<T, Integer>(elements[i].length);
+                for (int j = 0; j < elements[i].length; j++) {
+                    this.fallback[i].put(elements[i][j], j);
+                }
+            }
+            if (this.kinds[i] != KIND_OBJECT) {
+                buildDirectTable(i, elements[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the given element in the given dimension, -1 if it is unknown
+     * @param dimension
+     * @param element
+     * @return
+     */
+    int encode(int dimension, Object element) {
+        if (fallback[dimension] != null) {
+            Integer index = fallback[dimension].get(element);
+            return index == null ? -1 : index;
+        }
+        int hash = element.hashCode();
+        int slot = slot(hash, dimension);
+        Object key = keys[dimension][slot];
+        if (key == element || (key != null && hashes[dimension][slot] == hash && key.equals(element))) {
+            return positions[dimension][slot];
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the given primitive value in the given dimension, -1 if it is unknown.
+     * The dimension must consist of Integers or Longs.
+     * @param dimension
+     * @param value
+     * @return
+     */
+    int encode(int dimension, long value) {
+
+        // Direct table
+        int[] table = direct[dimension];
+        if (table != null) {
+            long offset = value - directOffsets[dimension];
+            return offset < 0 || offset >= table.length ? -1 : table[(int) offset];
+        }
+
+        // Check
+        int kind = kinds[dimension];
+        if (kind == KIND_OBJECT) {
+            throw new IllegalArgumentException("Dimension " + dimension + " does not consist of Integers or Longs");
+        } else if (kind == KIND_INTEGER && (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)) {
+            return -1;
+        }
+
+        // Fallback
+        if (fallback[dimension] != null) {
+            return encode(dimension, kind == KIND_INTEGER ? (Object) Integer.valueOf((int) value) : (Object) Long.valueOf(value));
+        }
+
+        // Perfect hashing
+        int hash = kind == KIND_INTEGER ? (int) value : (int) (value ^ (value >>> 32));
+        int slot = slot(hash, dimension);
+        int position = positions[dimension][slot];
+        return position != EMPTY && numbers[dimension][slot] == value ? position : -1;
+    }
+
+    /**
+     * Returns the number of dimensions
+     * @return
+     */
+    int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Builds a direct table for the given dimension, if its values are dense enough
+     * @param dimension
+     * @param elements
+     */
+    private void buildDirectTable(int dimension, T[] elements) {
+
+        // Determine range
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (T element : elements) {
+            long value = ((Number) element).longValue();
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        // Check
+        long size = max - min + 1;
+        if (elements.length == 0 || size <= 0 || size > Math.max(MIN_DIRECT_SIZE, (long) elements.length * MAX_DIRECT_FACTOR)) {
+            return;
+        }
+
+        // Build
+        int[] table = new int[(int) size];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = EMPTY;
+        }
+        for (int i = 0; i < elements.length; i++) {
+            table[(int) (((Number) elements[i]).longValue() - min)] = i;
+        }
+        this.direct[dimension] = table;
+        this.directOffsets[dimension] = min;
+    }
+
+    /**
+     * Tries to build a perfect hash table for the given dimension. Elements are distributed into small 
+     * buckets. For each bucket, starting with the largest one, a displacement is searched, which maps
+     * all of its elements into free slots of the table (hash and displace).
+     * @param dimension
+     * @param elements
+     * @return whether a perfect hash function has been found
+     */
+    private boolean buildPerfectHash(int dimension, T[] elements) {
+
+        // Init
+        int size = Integer.highestOneBit(Math.max(1, (elements.length * 4 + 2) / 3)) << 1;
+        int numBuckets = Integer.highestOneBit(Math.max(1, elements.length / BUCKET_SIZE)) << 1;
+        Object[] keys = new Object[size];
+        int[] hashes = new int[size];
+        int[] positions = new int[size];
+        long[] numbers = kinds[dimension] != KIND_OBJECT ? new long[size] : null;
+        int[] displacements = new int[numBuckets];
+        for (int i = 0; i < size; i++) {
+            positions[i] = EMPTY;
+        }
+
+        // Distribute into buckets
+        int[] codes = new int[elements.length];
+        int[] offsets = new int[numBuckets + 1];
+        for (int i = 0; i < elements.length; i++) {
+            codes[i] = elements[i].hashCode();
+            offsets[bucket(codes[i], numBuckets - 1) + 1]++;
+        }
+        int maxBucketSize = 0;
+        for (int i = 0; i < numBuckets; i++) {
+            maxBucketSize = Math.max(maxBucketSize, offsets[i + 1]);
+            offsets[i + 1] += offsets[i];
+        }
+        int[] members = new int[elements.length];
+        int[] fill = new int[numBuckets];
+        for (int i = 0; i < elements.length; i++) {
+            int bucket = bucket(codes[i], numBuckets - 1);
+            members[offsets[bucket] + fill[bucket]++] = i;
+        }
+
+        // Order buckets by size, descending
+        int[] order = new int[numBuckets];
+        int[] counts = new int[maxBucketSize + 2];
+        for (int i = 0; i < numBuckets; i++) {
+            counts[maxBucketSize - fill[i] + 1]++;
+        }
+        for (int i = 0; i < maxBucketSize + 1; i++) {
+            counts[i + 1] += counts[i];
+        }
+        for (int i = 0; i < numBuckets; i++) {
+            order[counts[maxBucketSize - fill[i]]++] = i;
+        }
+
+        // Place buckets
+        int[] slots = new int[maxBucketSize];
+        for (int bucket : order) {
+            
+            // Remove duplicates, the last one wins
+            int from = offsets[bucket];
+            int to = from + fill[bucket];
+            for (int i = from; i < to; i++) {
+                for (int j = i + 1; j < to; j++) {
+                    int first = members[i];
+                    int second = members[j];
+                    if (codes[first] == codes[second]) {
+                        if (!elements[first].equals(elements[second])) {
+                            return false; // No perfect hash function possible
+                        }
+                        members[j] = Math.max(first, second);
+                        members[i--] = members[--to];
+                        break;
+                    }
+                }
+            }
+            // Search displacement
+            int displacement = 0;
+            while (!isFree(codes, members, from, to, displacement, positions, slots)) {
+                if (++displacement == MAX_DISPLACEMENT) {
+                    return false;
+                }
+            }
+            
+            // Store
+            displacements[bucket] = displacement;
+            for (int i = from; i < to; i++) {
+                int element = members[i];
+                int slot = slots[i - from];
+                keys[slot] = elements[element];
+                hashes[slot] = codes[element];
+                positions[slot] = element;
+                if (numbers != null) {
+                    numbers[slot] = ((Number) elements[element]).longValue();
+                }
+            }
+        }
+
+        // Store
+        this.keys[dimension] = keys;
+        this.hashes[dimension] = hashes;
+        this.positions[dimension] = positions;
+        this.numbers[dimension] = numbers;
+        this.displacements[dimension] = displacements;
+        this.masks[dimension] = size - 1;
+        return true;
+    }
+
+    /**
+     * Returns the bucket for the given hash code
+     * @param hash
+     * @param mask
+     * @return
+     */
+    private int bucket(int hash, int mask) {
+        int h = hash * 0xCC9E2D51;
+        h ^= h >>> 15;
+        h *= 0x1B873593;
+        h ^= h >>> 16;
+        return h & mask;
+    }
+
+    /**
+     * Checks whether all given elements can be placed into free slots with the given displacement
+     * @param codes
+     * @param members
+     * @param from
+     * @param to
+     * @param displacement
+     * @param positions
+     * @param slots
+     * @return
+     */
+    private boolean isFree(int[] codes, int[] members, int from, int to, int displacement, int[] positions, int[] slots) {
+        int mask = positions.length - 1;
+        for (int i = from; i < to; i++) {
+            int slot = slot(codes[members[i]], displacement, mask);
+            if (positions[slot] != EMPTY) {
+                return false;
+            }
+            for (int j = 0; j < i - from; j++) {
+                if (slots[j] == slot) {
+                    return false;
+                }
+            }
+            slots[i - from] = slot;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the kind of the given dimension
+     * @param elements
+     * @return
+     */
+    private int getKind(T[] elements) {
+        boolean integers = true;
+        boolean longs = true;
+        for (T element : elements) {
+            integers &= element instanceof Integer;
+            longs &= element instanceof Long;
+        }
+        return elements.length == 0 ? KIND_OBJECT : integers ? KIND_INTEGER : longs ? KIND_LONG : KIND_OBJECT;
+    }
+
+    /**
+     * Returns the slot for the given hash code in the given dimension
+     * @param hash
+     * @param dimension
+     * @return
+     */
+    private int slot(int hash, int dimension) {
+        int[] displacements = this.displacements[dimension];
+        return slot(hash, displacements[bucket(hash, displacements.length - 1)], masks[dimension]);
+    }
+
+    /**
+     * Returns the slot for the given hash code and displacement
+     * @param hash
+     * @param displacement
+     * @param mask
+     * @return
+     */
+    private int slot(int hash, int displacement, int mask) {
+        int h1 = hash * 0x9E3779B9;
+        h1 ^= h1 >>> 16;
+        h1 *= 0x85EBCA6B;
+        h1 ^= h1 >>> 13;
+        int h2 = hash * 0xC2B2AE35;
+        h2 ^= h2 >>> 15;
+        return (h1 + displacement * (h2 | 1)) & mask;
+    }
+}
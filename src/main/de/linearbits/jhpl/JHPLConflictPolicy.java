@@ -0,0 +1,31 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+/**
+ * This interface resolves conflicts when merging lattices in which data has been associated with the same node
+ * 
+ * @author Fabian Prasser
+ *
+ * @param <U>
+ */
+public interface JHPLConflictPolicy<U> {
+
+    /**
+     * Returns the data that will be associated with the node in the merged lattice
+     * @param node
+     * @param data The data stored in the lattice into which the other lattice is merged
+     * @param other The data stored in the other lattice
+     * @return
+     */
+    public U resolve(int[] node, U data, U other);
+}
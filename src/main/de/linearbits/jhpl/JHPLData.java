@@ -62,6 +62,29 @@ class JHPLData<T, U> {
         return this.map.getByteSize();
     }
 
+    /**
+     * Merges the given data into this map. If data is associated with a node in both maps, the conflict is 
+     * resolved with the given policy. If no policy is given, data from the other map is stored.
+     * @param other
+     * @param policy
+     */
+    void merge(JHPLData<T, U> other, JHPLConflictPolicy<U> policy) {
+        JHPLMap<U> source = other.map;
+        for (int i = 0; i < source.states.length; i++) {
+            if (source.states[i] == JHPLMap.ASSIGNED) {
+                long id = source.keys[i];
+                U value = source.values[i];
+                if (policy != null) {
+                    U data = map.get(id);
+                    if (data != null) {
+                        value = policy.resolve(space.toIndex(id), data, value);
+                    }
+                }
+                map.put(id, value);
+            }
+        }
+    }
+
     /**
      * Puts data
      * @param node
@@ -0,0 +1,235 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.Arrays;
+
+/**
+ * This class implements a small frontier, in which each element is packed into a single long with 
+ * ceil(log2(height)) bits per dimension. Elements are compared with all dimensions at once, which is 
+ * faster than traversing a trie as long as the frontier is small. Frontiers are maintained alongside 
+ * tries for upwards-predictive (minimal elements) or downwards-predictive (maximal elements) properties 
+ * and are dropped, when they grow too large. Elements are ordered by level, so that only elements on 
+ * lower (upwards) or higher (downwards) levels are compared.<br>
+ * <br>
+ * If all dimensions have a height of two, elements are bitsets and comparisons are subset tests. This
+ * is cheap enough to support much larger frontiers.
+ * 
+ * @author Fabian Prasser
+ */
+class JHPLFrontier {
+
+    /** Constant */
+    private static final int    INITIAL_CAPACITY = 4;
+    /** Constant: maximal number of elements */
+    private static final int    MAX_SIZE         = 256;
+    /** Constant: maximal number of elements, if elements are bitsets */
+    private static final int    MAX_SIZE_BINARY  = 16384;
+
+    /** The shift of each dimension */
+    private final int[]         shifts;
+    /** The most significant bit of each dimension */
+    private final long          high;
+    /** Whether this frontier contains minimal elements */
+    private final boolean       up;
+    /** Whether elements are bitsets */
+    private final boolean       binary;
+    /** The maximal number of elements */
+    private final int           limit;
+    /** The packed elements, ordered by level */
+    private long[]              elements;
+    /** The index of the first element on each level, followed by the number of elements */
+    private int[]               offsets;
+
+    /**
+     * Creates a new instance
+     * @param shifts
+     * @param high
+     * @param up
+     * @param binary
+     * @param levels
+     */
+    private JHPLFrontier(int[] shifts, long high, boolean up, boolean binary, int levels) {
+        this.shifts = shifts;
+        this.high = high;
+        this.up = up;
+        this.binary = binary;
+        this.limit = binary ? MAX_SIZE_BINARY : MAX_SIZE;
+        this.elements = new long[INITIAL_CAPACITY];
+        this.offsets = new int[levels + 1];
+    }
+
+    /**
+     * Creates a frontier for the given heights. Returns <code>null</code>, if elements do not fit into a long.
+     * @param heights
+     * @param up Whether the frontier contains minimal elements
+     * @return
+     */
+    static JHPLFrontier create(int[] heights, boolean up) {
+        int[] shifts = new int[heights.length];
+        long high = 0L;
+        boolean binary = true;
+        int levels = 1;
+        int used = 0;
+        for (int i = 0; i < heights.length; i++) {
+            int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(heights[i] - 1));
+            if (used + bits > 64) {
+                return null;
+            }
+            shifts[i] = used;
+            used += bits;
+            high |= 1L << (used - 1);
+            binary &= heights[i] == 2;
+            levels += heights[i] - 1;
+        }
+        return new JHPLFrontier(shifts, high, up, binary, levels);
+    }
+
+    /**
+     * Returns whether each value of the first element is less than or equal to the according value of the 
+     * second element. For bitsets, this is a subset test. Otherwise, values are compared without their most 
+     * significant bits first, which cannot borrow from the next dimension. The result is then corrected with 
+     * the most significant bits.
+     * @param element1
+     * @param element2
+     * @return
+     */
+    private boolean isLessOrEqual(long element1, long element2) {
+        if (binary) {
+            return (element1 & ~element2) == 0L;
+        }
+        long lower = (element2 | high) - (element1 & ~high);
+        long result = (element2 & ~element1) | (~(element1 ^ element2) & lower);
+        return (result & high) == high;
+    }
+
+    /**
+     * Returns the index of the first element on the given level, or on the next valid level
+     * @param level
+     * @return
+     */
+    private int offset(long level) {
+        return offsets[(int) Math.max(0L, Math.min(level, offsets.length - 1))];
+    }
+
+    /**
+     * Packs the given element
+     * @param element
+     * @return
+     */
+    private long pack(int[] element) {
+        long result = 0L;
+        for (int i = 0; i < shifts.length; i++) {
+            result |= (long) element[i] << shifts[i];
+        }
+        return result;
+    }
+
+    /**
+     * Removes all elements that are implied by the given element
+     * @param element
+     */
+    void clear(int[] element) {
+        long packed = pack(element);
+        int count = 0;
+        for (int level = 0, i = 0; level < offsets.length - 1; level++) {
+            int end = offsets[level + 1];
+            offsets[level] = count;
+            for (; i < end; i++) {
+                long other = elements[i];
+                if (!(up ? isLessOrEqual(packed, other) : isLessOrEqual(other, packed))) {
+                    elements[count++] = other;
+                }
+            }
+        }
+        offsets[offsets.length - 1] = count;
+    }
+
+    /**
+     * Returns whether the given element is contained or implied by an element on a lower (upwards) or 
+     * higher (downwards) level
+     * @param element
+     * @param level
+     * @return
+     */
+    boolean contains(int[] element, int level) {
+        long packed = pack(element);
+        if (up) {
+            for (int i = 0, end = offset(level); i < end; i++) {
+                if (isLessOrEqual(elements[i], packed)) {
+                    return true;
+                }
+            }
+        } else {
+            for (int i = offset(level + 1L), end = offsets[offsets.length - 1]; i < end; i++) {
+                if (isLessOrEqual(packed, elements[i])) {
+                    return true;
+                }
+            }
+        }
+        int own = 0;
+        for (int value : element) {
+            own += value;
+        }
+        for (int i = offset(own), end = offset(own + 1); i < end; i++) {
+            if (elements[i] == packed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a copy of this frontier
+     * @return
+     */
+    JHPLFrontier copy() {
+        JHPLFrontier result = new JHPLFrontier(shifts, high, up, binary, offsets.length - 1);
+        result.elements = Arrays.copyOf(elements, elements.length);
+        result.offsets = Arrays.copyOf(offsets, offsets.length);
+        return result;
+    }
+
+    /**
+     * Returns the memory consumption in bytes
+     * @return
+     */
+    long getByteSize() {
+        return elements.length * 8 + offsets.length * 4;
+    }
+
+    /**
+     * Adds the given element. Returns <code>false</code>, if the frontier is too large.
+     * @param element
+     * @return
+     */
+    boolean put(int[] element) {
+        int size = offsets[offsets.length - 1];
+        if (size == limit) {
+            return false;
+        }
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        int level = 0;
+        for (int value : element) {
+            level += value;
+        }
+        int index = offsets[level + 1];
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = pack(element);
+        for (int i = level + 1; i < offsets.length; i++) {
+            offsets[i]++;
+        }
+        return true;
+    }
+}
@@ -11,9 +11,11 @@
  */
 package de.linearbits.jhpl;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 
 import de.linearbits.jhpl.JHPLIterator.ConditionalIntArrayIterator;
 import de.linearbits.jhpl.JHPLIterator.IntArrayCondition;
@@ -30,6 +32,8 @@ public class JHPLNodes<T> {
 
     /** Bottom node */
     private final int[]         bottom;
+    /** Codec for elements from the source space */
+    private final JHPLCodec<T>  codec;
     /** The number of dimensions */
     private final int           dimensions;
     /** Elements */
@@ -42,6 +46,20 @@ public class JHPLNodes<T> {
     private final Lattice<T, ?> lattice;
     /** Multiplier */
     private final long[]        multiplier;
+    /** Conversions between nodes and ids */
+    private final JHPLShape     shape;
+    /** Whether this is a powerset lattice, in which ids are bitsets */
+    private final boolean       powerset;
+    /** Packed ids: shift of each dimension within its word */
+    private final int[]         packedShifts;
+    /** Packed ids: mask of each dimension */
+    private final long[]        packedMasks;
+    /** Packed ids: word of each dimension */
+    private final int[]         packedWords;
+    /** Packed ids: number of words, zero if not supported */
+    private final int           packedNumWords;
+    /** The dimensions in the order in which they are stored in tries */
+    private final int[]         order;
 
     /**
      * Creates a new instance
@@ -60,12 +78,53 @@ public class JHPLNodes<T> {
             top[i] = elements[i].length - 1;
         }
         this.elements = elements;
+        this.codec = new JHPLCodec<T>(elements);
         this.lattice = lattice;
         this.multiplier = new long[this.dimensions];
         this.multiplier[elements.length - 1] = 1;
         for (int i = elements.length - 2; i >= 0; i--) {
             this.multiplier[i] = this.elements[i + 1].length * this.multiplier[i + 1];
         }
+        this.shape = JHPLShape.create(this.heights, this.multiplier);
+        this.powerset = JHPLShape.isPowerset(this.heights);
+        
+        // Packed ids: each dimension gets ceil(log2(height)) bits. The first dimension is
+        // the most significant one, which means that packed ids are ordered like dense ids.
+        this.packedShifts = new int[this.dimensions];
+        this.packedMasks = new long[this.dimensions];
+        this.packedWords = new int[this.dimensions];
+        int[] used = new int[this.dimensions + 1];
+        int word = 0;
+        for (int i = 0; i < this.dimensions; i++) {
+            int bits = 32 - Integer.numberOfLeadingZeros(heights[i] - 1);
+            if (used[word] + bits > 63) {
+                word++;
+            }
+            this.packedWords[i] = word;
+            this.packedMasks[i] = (1L << bits) - 1L;
+            this.packedShifts[i] = used[word];
+            used[word] += bits;
+        }
+        for (int i = 0; i < this.dimensions; i++) {
+            int bits = Long.bitCount(packedMasks[i]);
+            this.packedShifts[i] = used[packedWords[i]] - packedShifts[i] - bits;
+        }
+        this.packedNumWords = word < 2 ? word + 1 : 0;
+
+        // Order of dimensions in tries: trivial dimensions are removed
+        List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < this.dimensions; i++) {
+            if (heights[i] > 1) {
+                order.add(i);
+            }
+        }
+        if (order.isEmpty()) {
+            order.add(0);
+        }
+        this.order = new int[order.size()];
+        for (int i = 0; i < this.order.length; i++) {
+            this.order[i] = order.get(i);
+        }
     }
 
     /**
@@ -73,7 +132,7 @@ public class JHPLNodes<T> {
      * @return
      */
     public JHPLBuilder<T> build() {
-        return new JHPLBuilder<T>(elements);
+        return new JHPLBuilder<T>(codec);
     }
 
     /**
@@ -83,7 +142,7 @@ public class JHPLNodes<T> {
      * @return
      */
     public JHPLBuilder<T> build(int[] result) {
-        return new JHPLBuilder<T>(result, elements);
+        return new JHPLBuilder<T>(result, codec);
     }
 
     /**
@@ -113,11 +172,20 @@ public class JHPLNodes<T> {
      * @return
      */
     public int getLevel(long id) {
+        return shape.getLevel(id);
+    }
+
+    /**
+     * Returns the level of the given node, which is represented by a packed id.
+     * Requires packed ids that fit into a single word.
+     * @param packedId
+     * @return
+     */
+    public int getLevelPacked(long packedId) {
+        checkPackedSingleWord();
         int level = 0;
         for (int i = 0; i < dimensions; i++) {
-            long mult = multiplier[i];
-            level += (int)(id / mult);
-            id %= mult;
+            level += (int)((packedId >>> packedShifts[i]) & packedMasks[i]);
         }
         return level;
     }
@@ -184,6 +252,17 @@ public class JHPLNodes<T> {
         return Arrays.equals(node1, node2);
     }
 
+    /**
+     * Returns a symmetric chain decomposition of the lattice. Chains are generated lazily, one at a time,
+     * and returned as arrays of identifiers that are ordered from the lowest to the highest node. Each node
+     * is contained in exactly one chain and the levels of the first and last node of each chain sum up to 
+     * the level of the top node.
+     * @return
+     */
+    public Iterator<long[]> listChains() {
+        return new JHPLChains(heights, multiplier);
+    }
+
     /**
      * Returns an iterator over all predecessors. Note: the iterator will always return the same array.
      * @param node
@@ -200,6 +279,10 @@ public class JHPLNodes<T> {
      */
     public LongIterator listPredecessors(final long _id) {
 
+        if (powerset) {
+            return listNeighbors(_id, _id);
+        }
+
         return new LongIterator() {
             
             // State
@@ -295,6 +378,52 @@ public class JHPLNodes<T> {
         };
     }
 
+    /**
+     * Returns an iterator over all predecessors of the node with the given packed id. Requires packed ids that 
+     * fit into a single word.
+     * @param _packedId
+     * @return
+     */
+    public LongIterator listPredecessorsPacked(final long _packedId) {
+
+        checkPackedSingleWord();
+        return new LongIterator() {
+            
+            // State
+            int dimension = 0;
+            // State
+            long next = pull();
+            
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+            
+            @Override
+            public long next() {
+                long result = next;
+                next = pull();
+                return result;
+            }
+
+            /**
+             * Returns the id of the next element, returns a negative value if there is no such element
+             * @return
+             */
+            private long pull() {
+                while (dimension < dimensions) {
+                    int shift = packedShifts[dimension];
+                    long value = (_packedId >>> shift) & packedMasks[dimension];
+                    dimension++;
+                    if (value > 0) {
+                        return _packedId - (1L << shift);
+                    }
+                } 
+                return -1;
+            }
+        };
+    }
+
     /**
      * Lists all predecessors not stored in the lattice
      * @return
@@ -416,6 +545,10 @@ public class JHPLNodes<T> {
      */
     public LongIterator listSuccessors(final long _id) {
         
+        if (powerset) {
+            return listNeighbors(_id, ~_id & ((1L << dimensions) - 1L));
+        }
+        
         return new LongIterator() {
             
             // State
@@ -513,6 +646,52 @@ public class JHPLNodes<T> {
         };
     }
 
+    /**
+     * Returns an iterator over all successors of the node with the given packed id. Requires packed ids that 
+     * fit into a single word.
+     * @param _packedId
+     * @return
+     */
+    public LongIterator listSuccessorsPacked(final long _packedId) {
+
+        checkPackedSingleWord();
+        return new LongIterator() {
+            
+            // State
+            int dimension = 0;
+            // State
+            long next = pull();
+            
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+            
+            @Override
+            public long next() {
+                long result = next;
+                next = pull();
+                return result;
+            }
+
+            /**
+             * Returns the id of the next element, returns a negative value if there is no such element
+             * @return
+             */
+            private long pull() {
+                while (dimension < dimensions) {
+                    int shift = packedShifts[dimension];
+                    long value = (_packedId >>> shift) & packedMasks[dimension];
+                    dimension++;
+                    if (value + 1 < heights[dimension - 1]) {
+                        return _packedId + (1L << shift);
+                    }
+                } 
+                return -1;
+            }
+        };
+    }
+
     /**
      * Lists all successors not stored in the lattice
      * @return
@@ -771,6 +950,43 @@ public class JHPLNodes<T> {
         };
     }
 
+    /**
+     * Returns an iterator over the neighbors of the given node in a powerset lattice, which differ in 
+     * one of the given bits. Neighbors are returned in the order of dimensions.
+     * @param id
+     * @param bits
+     * @return
+     */
+    private LongIterator listNeighbors(final long id, final long bits) {
+        
+        return new LongIterator() {
+            
+            // State
+            long remaining = bits;
+
+            @Override
+            public boolean hasNext() {
+                return remaining != 0L;
+            }
+
+            @Override
+            public long next() {
+                long bit = Long.highestOneBit(remaining);
+                remaining ^= bit;
+                return id ^ bit;
+            }
+        };
+    }
+
+    /**
+     * Checks whether packed ids fit into a single word
+     */
+    private void checkPackedSingleWord() {
+        if (packedNumWords != 1) {
+            throw new UnsupportedOperationException("Packed ids of this lattice do not fit into a single word");
+        }
+    }
+
     /**
      * Dimensions
      * @return
@@ -786,4 +1002,60 @@ public class JHPLNodes<T> {
     int[] getHeights() {
         return this.heights;
     }
+
+    /**
+     * Returns the codec for elements from the source space
+     * @return
+     */
+    JHPLCodec<T> getCodec() {
+        return codec;
+    }
+
+    /**
+     * Returns the dimensions in the order in which they are stored in tries
+     * @return
+     */
+    int[] getOrder() {
+        return this.order;
+    }
+
+    /**
+     * Packed ids: mask of each dimension
+     * @return
+     */
+    long[] getPackedMasks() {
+        return this.packedMasks;
+    }
+
+    /**
+     * Packed ids: number of words, zero if packed ids are not supported
+     * @return
+     */
+    int getPackedNumWords() {
+        return this.packedNumWords;
+    }
+
+    /**
+     * Packed ids: shift of each dimension within its word
+     * @return
+     */
+    int[] getPackedShifts() {
+        return this.packedShifts;
+    }
+
+    /**
+     * Packed ids: word of each dimension
+     * @return
+     */
+    int[] getPackedWords() {
+        return this.packedWords;
+    }
+
+    /**
+     * Returns the conversions between nodes and ids
+     * @return
+     */
+    JHPLShape getShape() {
+        return this.shape;
+    }
 }
@@ -0,0 +1,868 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+
+/**
+ * This class implements queries that combine properties and the set of nodes stored in a lattice
+ * with <code>and</code>, <code>or</code> and <code>andNot</code>. Queries are evaluated by walking the
+ * involved tries together. Subtrees in which all or none of the nodes qualify are handled as a whole.
+ * Queries are immutable and can be evaluated on any lattice.
+ *
+ * @author Fabian Prasser
+ */
+public class JHPLQuery {
+
+    /**
+     * A query that has been bound to the tries of a lattice
+     * @author Fabian Prasser
+     */
+    private static class Bound {
+
+        /** Type */
+        private final int              type;
+        /** Direction, for properties */
+        private final Direction        direction;
+        /** Frontier for upwards-predictive properties */
+        private final Frontier         up;
+        /** Frontier for downwards-predictive properties */
+        private final Frontier         down;
+        /** Map for non-predictive properties */
+        private final JHPLMap<Boolean> map;
+        /** Left operand */
+        private final Bound            left;
+        /** Right operand */
+        private final Bound            right;
+
+        /**
+         * Binds the given query to the given lattice
+         * @param query
+         * @param lattice
+         * @param frontiers
+         */
+        Bound(JHPLQuery query, Lattice<?, ?> lattice, List<Frontier> frontiers) {
+            this.type = query.type;
+            this.direction = query.property == null ? null : query.property.getDirection();
+            this.up = query.property == null ? null : frontier(lattice.getPropertyTrieUp(query.property), true, frontiers);
+            this.down = query.property == null ? null : frontier(lattice.getPropertyTrieDown(query.property), false, frontiers);
+            this.map = query.property == null ? null : lattice.getPropertyMap(query.property);
+            this.left = query.left == null ? null : new Bound(query.left, lattice, frontiers);
+            this.right = query.right == null ? null : new Bound(query.right, lattice, frontiers);
+        }
+
+        /**
+         * Creates a frontier for the given trie, if there is one
+         * @param trie
+         * @param up
+         * @param frontiers
+         * @return
+         */
+        private Frontier frontier(JHPLTrie trie, boolean up, List<Frontier> frontiers) {
+            if (trie == null) {
+                return null;
+            }
+            Frontier frontier = new Frontier(trie, up);
+            frontiers.add(frontier);
+            return frontier;
+        }
+    }
+
+    /**
+     * Evaluates a query on a lattice
+     * @author Fabian Prasser
+     */
+    private static class Evaluator {
+
+        /** The lattice */
+        private final Lattice<?, ?>  lattice;
+        /** The query */
+        private final Bound          query;
+        /** The frontiers of all tries involved */
+        private final Frontier[]     frontiers;
+        /** The master trie */
+        private final JHPLTrieEQ     master;
+        /** The number of dimensions */
+        private final int            dimensions;
+        /** The height of each dimension */
+        private final int[]          heights;
+        /** The maximal level of the suffix starting at each dimension */
+        private final int[]          suffix;
+        /** The current element, in the order of the tries */
+        private final int[]          element;
+        /** The current element, in the order of the lattice */
+        private final int[]          node;
+
+        /**
+         * Creates a new instance
+         * @param query
+         * @param lattice
+         */
+        Evaluator(JHPLQuery query, Lattice<?, ?> lattice) {
+            List<Frontier> frontiers = new ArrayList<Frontier>();
+            this.lattice = lattice;
+            this.query = new Bound(query, lattice, frontiers);
+            this.frontiers = frontiers.toArray(new Frontier[frontiers.size()]);
+            this.master = lattice.getMaster();
+            this.dimensions = master.dimensions;
+            this.heights = master.heights;
+            this.suffix = new int[dimensions + 1];
+            for (int i = dimensions - 1; i >= 0; i--) {
+                suffix[i] = suffix[i + 1] + heights[i] - 1;
+            }
+            this.element = new int[dimensions];
+            this.node = new int[lattice.numDimensions()];
+        }
+
+        /**
+         * Counts all qualifying nodes in the subtree with the given prefix
+         * @param counts
+         * @param state
+         * @param dimension
+         * @param prefix level of the prefix
+         * @param level
+         * @return
+         */
+        private long count(long[][] counts, int state, int dimension, int prefix, int level) {
+
+            // All nodes in the subtree qualify
+            if (state == TRUE) {
+                if (level < 0) {
+                    return counts[dimension][counts[dimension].length - 1];
+                }
+                int remaining = level - prefix;
+                return remaining < 0 || remaining >= counts[dimension].length ? 0 : counts[dimension][remaining];
+            }
+
+            // Prepare
+            descend(dimension);
+            
+            // Foreach
+            long result = 0;
+            for (int value = start(dimension, prefix, level) + 1; value < heights[dimension]; value++) {
+                int current = prefix + value;
+                if (level >= 0 && current > level) {
+                    break;
+                }
+                int next = evaluate(dimension, value);
+                if (next != FALSE) {
+                    result += count(counts, next, dimension + 1, current, level);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Prepares all frontiers for enumerating the values of the given dimension
+         * @param dimension
+         */
+        private void descend(int dimension) {
+            for (Frontier frontier : frontiers) {
+                frontier.descend(dimension);
+            }
+        }
+
+        /**
+         * Evaluates the query on all elements that share the first elements of the current element
+         * @param query
+         * @param length
+         * @return
+         */
+        private int evaluate(Bound query, int length) {
+            switch (query.type) {
+            case TYPE_ALL:
+                return TRUE;
+            case TYPE_STORED:
+                return master.containsPrefix(element, length);
+            case TYPE_PROPERTY:
+                switch (query.direction) {
+                case UP:
+                    return query.up == null ? FALSE : query.up.evaluate(length);
+                case DOWN:
+                    return query.down == null ? FALSE : query.down.evaluate(length);
+                case BOTH:
+                    return or(query.up == null ? FALSE : query.up.evaluate(length), 
+                              query.down == null ? FALSE : query.down.evaluate(length));
+                case NONE:
+                    if (query.map == null) {
+                        return FALSE;
+                    } else if (length < dimensions) {
+                        return UNKNOWN;
+                    } else {
+                        Boolean result = query.map.get(lattice.space().toId(master.toLattice(element, node)));
+                        return result != null && result ? TRUE : FALSE;
+                    }
+                default:
+                    throw new IllegalArgumentException("Property with unknown direction");
+                }
+            case TYPE_AND:
+                int left = evaluate(query.left, length);
+                return left == FALSE ? FALSE : and(left, evaluate(query.right, length));
+            case TYPE_OR:
+                left = evaluate(query.left, length);
+                return left == TRUE ? TRUE : or(left, evaluate(query.right, length));
+            case TYPE_AND_NOT:
+                left = evaluate(query.left, length);
+                return left == FALSE ? FALSE : and(left, not(evaluate(query.right, length)));
+            default:
+                throw new IllegalStateException("Unknown type of query");
+            }
+        }
+
+        /**
+         * Sets the given value in the given dimension and evaluates the query on the resulting subtree
+         * @param dimension
+         * @param value
+         * @return
+         */
+        private int evaluate(int dimension, int value) {
+            element[dimension] = value;
+            for (Frontier frontier : frontiers) {
+                frontier.select(dimension, value);
+            }
+            return evaluate(query, dimension + 1);
+        }
+
+        /**
+         * Returns the value before the first value that needs to be considered in the given dimension
+         * @param dimension
+         * @param prefix
+         * @param level
+         * @return
+         */
+        private int start(int dimension, int prefix, int level) {
+            return level < 0 ? -1 : Math.max(0, level - prefix - suffix[dimension + 1]) - 1;
+        }
+
+        /**
+         * Counts all qualifying elements. If level is negative, elements on all levels will be counted.
+         * @param level
+         * @return
+         */
+        long count(int level) {
+            int state = evaluate(query, 0);
+            return state == FALSE ? 0 : count(counts(level), state, 0, 0, level);
+        }
+
+        /**
+         * Returns the number of suffixes starting at each dimension, for each level of the suffix. If level is 
+         * negative, the last entry for each dimension contains the total number of suffixes.
+         * @param level
+         * @return
+         */
+        private long[][] counts(int level) {
+
+            // Number of suffixes per level, starting at each dimension
+            long[][] counts = new long[dimensions + 1][];
+            counts[dimensions] = new long[] { 1L };
+            for (int dimension = dimensions - 1; dimension >= 0; dimension--) {
+                counts[dimension] = new long[suffix[dimension] + 1];
+                for (int sum = 0; sum < counts[dimension].length; sum++) {
+                    for (int value = 0; value < heights[dimension] && value <= sum; value++) {
+                        if (sum - value < counts[dimension + 1].length) {
+                            counts[dimension][sum] += counts[dimension + 1][sum - value];
+                        }
+                    }
+                }
+            }
+
+            // Total number of suffixes, for all levels
+            if (level < 0) {
+                for (int dimension = 0; dimension <= dimensions; dimension++) {
+                    long total = 0;
+                    for (long count : counts[dimension]) {
+                        total += count;
+                    }
+                    counts[dimension][counts[dimension].length - 1] = total;
+                }
+            }
+            return counts;
+        }
+
+        /**
+         * Returns an iterator over all qualifying elements. If level is negative, elements on all levels will be returned.
+         * Note: hasNext() is not implemented. Simply iterate until <code>null</code> is returned.
+         * @param level
+         * @return
+         */
+        Iterator<int[]> iterator(final int level) {
+
+            // Init
+            final int[] states = new int[dimensions];
+            final int[] prefixes = new int[dimensions];
+            states[0] = evaluate(query, 0);
+            if (states[0] != TRUE) {
+                descend(0);
+            }
+            element[0] = start(0, 0, level);
+
+            // Return
+            return new Iterator<int[]>() {
+
+                /** Current dimension */
+                int dimension = states[0] == FALSE ? -1 : 0;
+
+                @Override public boolean hasNext() { throw new UnsupportedOperationException(); }
+
+                @Override
+                public int[] next() {
+
+                    // Iterate
+                    while (dimension >= 0) {
+
+                        // Increment
+                        int value = element[dimension] + 1;
+                        int current = prefixes[dimension] + value;
+
+                        // End of node
+                        if (value >= heights[dimension] || (level >= 0 && current > level)) {
+                            dimension--;
+                            continue;
+                        }
+
+                        // Evaluate
+                        int state = states[dimension];
+                        if (state != TRUE) {
+                            state = evaluate(dimension, value);
+                            if (state == FALSE) {
+                                continue;
+                            }
+                        } else {
+                            element[dimension] = value;
+                        }
+
+                        // Branch
+                        if (dimension < dimensions - 1) {
+                            dimension++;
+                            states[dimension] = state;
+                            prefixes[dimension] = current;
+                            if (state != TRUE) {
+                                descend(dimension);
+                            }
+                            element[dimension] = start(dimension, current, level);
+                        } else if (level < 0 || current == level) {
+                            return master.toLattice(element, node); // Leaf node on required level
+                        }
+                    }
+                    return null;
+                }
+                @Override public void remove() { throw new UnsupportedOperationException(); }
+            };
+        }
+
+        /**
+         * Returns the qualifying elements with the given ranks in lexicographic order. Ranks must be sorted.
+         * If level is negative, elements on all levels will be considered.
+         * @param level
+         * @param ranks
+         * @return
+         */
+        List<int[]> sample(int level, long[] ranks) {
+            List<int[]> result = new ArrayList<int[]>();
+            int state = evaluate(query, 0);
+            if (state != FALSE && ranks.length > 0) {
+                sample(counts(level), state, 0, 0, level, 0L, ranks, 0, result);
+            }
+            return result;
+        }
+
+        /**
+         * Collects all qualifying elements in the subtree with the given prefix whose ranks are covered by
+         * the subtree. Subtrees that do not cover any rank are only counted.
+         * @param counts
+         * @param state
+         * @param dimension
+         * @param prefix level of the prefix
+         * @param level
+         * @param offset rank of the first qualifying element in the subtree
+         * @param ranks
+         * @param index index of the next rank
+         * @param result
+         * @return the index of the next rank
+         */
+        private int sample(long[][] counts, int state, int dimension, int prefix, int level, 
+                           long offset, long[] ranks, int index, List<int[]> result) {
+
+            // Leaf
+            if (dimension == dimensions) {
+                while (index < ranks.length && ranks[index] == offset) {
+                    result.add(master.toLattice(element, node).clone());
+                    index++;
+                }
+                return index;
+            }
+
+            // Prepare
+            if (state != TRUE) {
+                descend(dimension);
+            }
+
+            // Foreach
+            for (int value = start(dimension, prefix, level) + 1; value < heights[dimension]; value++) {
+                int current = prefix + value;
+                if (level >= 0 && current > level) {
+                    break;
+                }
+                int next = TRUE;
+                if (state != TRUE) {
+                    next = evaluate(dimension, value);
+                    if (next == FALSE) {
+                        continue;
+                    }
+                } else {
+                    element[dimension] = value;
+                }
+                long count = count(counts, next, dimension + 1, current, level);
+                if (ranks[index] < offset + count) {
+                    index = sample(counts, next, dimension + 1, current, level, offset, ranks, index, result);
+                    if (index == ranks.length) {
+                        break;
+                    }
+                }
+                offset += count;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * The set of pages of a trie for an upwards- or downwards-predictive property that are reachable with 
+     * prefixes of elements that are less than or equal (or greater than or equal) to the prefix of the
+     * current element. In each dimension, the pages are sorted by the value of the current element
+     * through which they are reachable, which means that each value selects a range of pages.
+     * @author Fabian Prasser
+     */
+    private static class Frontier {
+
+        /** The trie */
+        private final JHPLTrie         trie;
+        /** Upwards or downwards */
+        private final boolean          up;
+        /** The number of dimensions */
+        private final int              dimensions;
+        /** The height of each dimension */
+        private final int[]            heights;
+        /** Pages in each dimension, sorted by value */
+        private final int[][]          pages;
+        /** Offsets of the values in the pages of each dimension */
+        private final int[][]          bounds;
+        /** Start of the selected range of pages in each dimension */
+        private final int[]            from;
+        /** End of the selected range of pages in each dimension */
+        private final int[]            to;
+        /** First (or last) page in each dimension from which the minimal (or maximal) element is reachable */
+        private final int[]            chains;
+        /** Cache for pages from which the minimal (or maximal) element is reachable, which only holds visited pages */
+        private final JHPLMap<Boolean> cache;
+
+        /**
+         * Creates a new instance
+         * @param trie
+         * @param up
+         */
+        Frontier(JHPLTrie trie, boolean up) {
+            this.trie = trie;
+            this.up = up;
+            this.dimensions = trie.dimensions;
+            this.heights = trie.heights;
+            this.pages = new int[dimensions + 1][];
+            this.bounds = new int[dimensions][];
+            this.from = new int[dimensions + 1];
+            this.to = new int[dimensions + 1];
+            this.chains = new int[dimensions];
+            this.cache = new JHPLMap<Boolean>();
+            this.pages[0] = new int[] { 0 };
+            this.to[0] = 1;
+            for (int i = 0; i < dimensions; i++) {
+                this.pages[i + 1] = new int[heights[i]];
+                this.bounds[i] = new int[heights[i] + 1];
+            }
+            this.chains[0] = chain(0, 0) ? 0 : (up ? Integer.MAX_VALUE : -1);
+        }
+
+        /**
+         * Returns whether the minimal (or maximal) element of the subtree is reachable from the given page
+         * @param pointer
+         * @param dimension
+         * @return
+         */
+        private boolean chain(int pointer, int dimension) {
+            Boolean result = cache.get(pointer);
+            if (result == null) {
+                int next = trie.get(pointer, dimension, up ? 0 : heights[dimension] - 1);
+                result = next != JHPLBuffer.FLAG_NOT_AVAILABLE && (dimension == dimensions - 1 || chain(next, dimension + 1));
+                cache.put(pointer, result);
+            }
+            return result;
+        }
+
+        /**
+         * Sorts the children of the selected pages in the given dimension by value
+         * @param dimension
+         */
+        void descend(int dimension) {
+            
+            // Count
+            int[] bound = bounds[dimension];
+            Arrays.fill(bound, 0);
+            int height = heights[dimension];
+
+            // On the last level, each page is only represented by its minimal (or maximal) value
+            if (dimension == dimensions - 1) {
+                for (int i = from[dimension]; i < to[dimension]; i++) {
+                    int page = pages[dimension][i];
+                    int value = up ? trie.ceiling(page, dimension, 0) : trie.floor(page, dimension, height - 1);
+                    if (value >= 0 && value < height) {
+                        bound[value + 1]++;
+                    }
+                }
+                for (int value = 0; value < height; value++) {
+                    bound[value + 1] += bound[value];
+                }
+                return;
+            }
+
+            // Count
+            for (int i = from[dimension]; i < to[dimension]; i++) {
+                int page = pages[dimension][i];
+                for (int value = trie.ceiling(page, dimension, 0); value < height; value = trie.ceiling(page, dimension, value + 1)) {
+                    bound[value + 1]++;
+                }
+            }
+            for (int value = 0; value < height; value++) {
+                bound[value + 1] += bound[value];
+            }
+            
+            // Ensure capacity
+            if (pages[dimension + 1].length < bound[height]) {
+                pages[dimension + 1] = new int[Math.max(bound[height], pages[dimension + 1].length * 2)];
+            }
+            
+            // Sort
+            int[] children = pages[dimension + 1];
+            for (int i = from[dimension]; i < to[dimension]; i++) {
+                int page = pages[dimension][i];
+                for (int value = trie.ceiling(page, dimension, 0); value < height; value = trie.ceiling(page, dimension, value + 1)) {
+                    children[bound[value]++] = trie.get(page, dimension, value);
+                }
+            }
+            for (int value = height; value > 0; value--) {
+                bound[value] = bound[value - 1];
+            }
+            bound[0] = 0;
+            
+            // Find the first (or last) page from which the minimal (or maximal) element is reachable
+            int size = bound[height];
+            chains[dimension + 1] = up ? Integer.MAX_VALUE : -1;
+            for (int i = 0; i < size; i++) {
+                int index = up ? i : size - 1 - i;
+                if (chain(children[index], dimension + 1)) {
+                    chains[dimension + 1] = index;
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Evaluates the property on all elements that share a prefix of the given length with the current element
+         * @param length
+         * @return
+         */
+        int evaluate(int length) {
+            
+            // No page reachable
+            if (from[length] == to[length]) {
+                return JHPLQuery.FALSE;
+            } else if (length == dimensions) {
+                return JHPLQuery.TRUE;
+            }
+            
+            // Check whether the minimal (or maximal) element of the subtree is contained
+            if (up ? chains[length] < to[length] : chains[length] >= from[length]) {
+                return JHPLQuery.TRUE;
+            } else {
+                return JHPLQuery.UNKNOWN;
+            }
+        }
+
+        /**
+         * Selects the range of pages that are reachable with the given value in the given dimension
+         * @param dimension
+         * @param value
+         */
+        void select(int dimension, int value) {
+            int[] bound = bounds[dimension];
+            from[dimension + 1] = up ? 0 : bound[value];
+            to[dimension + 1] = up ? bound[value + 1] : bound[heights[dimension]];
+        }
+    }
+
+    /** Result of evaluation */
+    static final int           FALSE        = 0;
+    /** Result of evaluation */
+    static final int           TRUE         = 1;
+    /** Result of evaluation */
+    static final int           UNKNOWN      = 2;
+
+    /** Type of query */
+    private static final int   TYPE_STORED  = 0;
+    /** Type of query */
+    private static final int   TYPE_PROPERTY = 1;
+    /** Type of query */
+    private static final int   TYPE_AND     = 2;
+    /** Type of query */
+    private static final int   TYPE_OR      = 3;
+    /** Type of query */
+    private static final int   TYPE_AND_NOT = 4;
+    /** Type of query */
+    private static final int   TYPE_ALL     = 5;
+
+    /**
+     * Returns a query for all nodes in the lattice
+     * @return
+     */
+    public static JHPLQuery all() {
+        return new JHPLQuery(TYPE_ALL, null, null, null);
+    }
+
+    /**
+     * Returns a query for all nodes with the given property
+     * @param property
+     * @return
+     */
+    public static JHPLQuery property(PredictiveProperty property) {
+        if (property == null) {
+            throw new NullPointerException("Property must not be null");
+        }
+        return new JHPLQuery(TYPE_PROPERTY, property, null, null);
+    }
+
+    /**
+     * Returns a query for all nodes stored in the lattice
+     * @return
+     */
+    public static JHPLQuery stored() {
+        return new JHPLQuery(TYPE_STORED, null, null, null);
+    }
+
+    /**
+     * Three-valued conjunction
+     * @param left
+     * @param right
+     * @return
+     */
+    private static int and(int left, int right) {
+        if (left == FALSE || right == FALSE) {
+            return FALSE;
+        } else if (left == TRUE && right == TRUE) {
+            return TRUE;
+        } else {
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * Three-valued negation
+     * @param value
+     * @return
+     */
+    private static int not(int value) {
+        return value == UNKNOWN ? UNKNOWN : (value == TRUE ? FALSE : TRUE);
+    }
+
+    /**
+     * Three-valued disjunction
+     * @param left
+     * @param right
+     * @return
+     */
+    private static int or(int left, int right) {
+        if (left == TRUE || right == TRUE) {
+            return TRUE;
+        } else if (left == FALSE && right == FALSE) {
+            return FALSE;
+        } else {
+            return UNKNOWN;
+        }
+    }
+
+    /** Type */
+    private final int                type;
+    /** Property */
+    private final PredictiveProperty property;
+    /** Left operand */
+    private final JHPLQuery          left;
+    /** Right operand */
+    private final JHPLQuery          right;
+
+    /**
+     * Creates a new instance
+     * @param type
+     * @param property
+     * @param left
+     * @param right
+     */
+    private JHPLQuery(int type, PredictiveProperty property, JHPLQuery left, JHPLQuery right) {
+        this.type = type;
+        this.property = property;
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Returns a query for all nodes that qualify for this query and the given query
+     * @param query
+     * @return
+     */
+    public JHPLQuery and(JHPLQuery query) {
+        return new JHPLQuery(TYPE_AND, null, this, check(query));
+    }
+
+    /**
+     * Returns a query for all nodes that qualify for this query but not for the given query
+     * @param query
+     * @return
+     */
+    public JHPLQuery andNot(JHPLQuery query) {
+        return new JHPLQuery(TYPE_AND_NOT, null, this, check(query));
+    }
+
+    /**
+     * Returns whether all nodes returned by this query are stored in the lattice. Such queries
+     * can be evaluated safely on large lattices.
+     * @return
+     */
+    public boolean isBounded() {
+        switch (type) {
+        case TYPE_STORED:
+            return true;
+        case TYPE_ALL:
+        case TYPE_PROPERTY:
+            return false;
+        case TYPE_AND:
+            return left.isBounded() || right.isBounded();
+        case TYPE_OR:
+            return left.isBounded() && right.isBounded();
+        case TYPE_AND_NOT:
+            return left.isBounded();
+        default:
+            throw new IllegalStateException("Unknown type of query");
+        }
+    }
+
+    /**
+     * Returns a query for all nodes that qualify for this query or the given query
+     * @param query
+     * @return
+     */
+    public JHPLQuery or(JHPLQuery query) {
+        return new JHPLQuery(TYPE_OR, null, this, check(query));
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+        case TYPE_ALL:
+            return "all";
+        case TYPE_STORED:
+            return "stored";
+        case TYPE_PROPERTY:
+            return property.getLabel();
+        case TYPE_AND:
+            return "(" + left + " and " + right + ")";
+        case TYPE_OR:
+            return "(" + left + " or " + right + ")";
+        case TYPE_AND_NOT:
+            return "(" + left + " and not " + right + ")";
+        default:
+            throw new IllegalStateException("Unknown type of query");
+        }
+    }
+
+    /**
+     * Checks the given operand
+     * @param query
+     * @return
+     */
+    private JHPLQuery check(JHPLQuery query) {
+        if (query == null) {
+            throw new NullPointerException("Query must not be null");
+        }
+        return query;
+    }
+
+    /**
+     * Counts all nodes that qualify for this query on the given lattice. If level is negative,
+     * nodes on all levels will be counted.
+     * @param lattice
+     * @param level
+     * @return
+     */
+    long count(Lattice<?, ?> lattice, int level) {
+        return new Evaluator(this, lattice).count(level);
+    }
+
+    /**
+     * Returns an iterator over all nodes that qualify for this query on the given lattice. If level is negative,
+     * nodes on all levels will be returned. Note: hasNext() is not implemented. Simply iterate until
+     * <code>null</code> is returned.
+     * @param lattice
+     * @param level
+     * @return
+     */
+    Iterator<int[]> iterator(Lattice<?, ?> lattice, int level) {
+        return new Evaluator(this, lattice).iterator(level);
+    }
+
+    /**
+     * Draws the given number of nodes that qualify for this query on the given lattice uniformly at random and
+     * independently of each other. If level is negative, nodes on all levels will be considered. Returns an empty
+     * list if no node qualifies.
+     * @param lattice
+     * @param level
+     * @param k
+     * @param random
+     * @return
+     */
+    List<int[]> sample(Lattice<?, ?> lattice, int level, int k, Random random) {
+
+        // Count
+        long total = count(lattice, level);
+        if (total == 0) {
+            return new ArrayList<int[]>();
+        }
+
+        // Draw ranks
+        long[] ranks = new long[k];
+        for (int i = 0; i < k; i++) {
+            long bits, value;
+            do {
+                bits = random.nextLong() >>> 1;
+                value = bits % total;
+            } while (bits - value + (total - 1) < 0);
+            ranks[i] = value;
+        }
+        Arrays.sort(ranks);
+
+        // Unrank
+        List<int[]> result = new Evaluator(this, lattice).sample(level, ranks);
+        Collections.shuffle(result, random);
+        return result;
+    }
+}
@@ -0,0 +1,482 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class implements conversions between nodes and identifiers for the heights of a given lattice. 
+ * Where possible, a subclass is generated at runtime, in which all loops are unrolled and all multipliers 
+ * are constants. This allows the JIT compiler to replace divisions by multiplications. Classes are defined 
+ * in this package via MethodHandles.Lookup.defineClass(), which requires Java 9. On older runtimes, or if 
+ * a lattice has too many dimensions, a generic implementation is used. Generated classes are shared by 
+ * all lattices with the same multipliers. As they are never unloaded, their number is limited, after which
+ * the generic implementation is used as well. In powerset lattices, ids are bitsets, which are converted with 
+ * bit operations instead.
+ * 
+ * @author Fabian Prasser
+ */
+abstract class JHPLShape {
+
+    /**
+     * Generic implementation
+     * @author Fabian Prasser
+     */
+    private static class Generic extends JHPLShape {
+
+        /** Multiplier */
+        private final long[] multiplier;
+
+        /**
+         * Creates a new instance
+         * @param multiplier
+         */
+        private Generic(long[] multiplier) {
+            this.multiplier = multiplier;
+        }
+
+        @Override
+        int getLevel(long id) {
+            int level = 0;
+            for (int i = 0; i < multiplier.length; i++) {
+                long mult = multiplier[i];
+                level += (int)(id / mult);
+                id %= mult;
+            }
+            return level;
+        }
+
+        @Override
+        long toId(int[] node) {
+            long id = 0;
+            for (int i = 0; i < multiplier.length; i++) {
+                id += (long) node[i] * multiplier[i];
+            }
+            return id;
+        }
+
+        @Override
+        int[] toIndex(int[] result, long id) {
+            for (int i = 0; i < multiplier.length; i++) {
+                result[i] = (int)(id / multiplier[i]);
+                id %= multiplier[i];
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Implementation for powerset lattices, in which ids are bitsets
+     * @author Fabian Prasser
+     */
+    private static class Powerset extends JHPLShape {
+
+        /** The number of dimensions */
+        private final int dimensions;
+
+        /**
+         * Creates a new instance
+         * @param dimensions
+         */
+        private Powerset(int dimensions) {
+            this.dimensions = dimensions;
+        }
+
+        @Override
+        int getLevel(long id) {
+            return Long.bitCount(id);
+        }
+
+        @Override
+        long toId(int[] node) {
+            long id = 0;
+            for (int i = 0; i < dimensions; i++) {
+                id = (id << 1) | node[i];
+            }
+            return id;
+        }
+
+        @Override
+        int[] toIndex(int[] result, long id) {
+            for (int i = dimensions - 1; i >= 0; i--) {
+                result[i] = (int) id & 1;
+                id >>>= 1;
+            }
+            return result;
+        }
+    }
+
+    /** Constant: maximal number of dimensions for which code is generated */
+    private static final int                     MAX_DIMENSIONS = 64;
+    /** Constant: maximal number of classes that are generated, as they are never unloaded */
+    private static final int                     MAX_SHAPES     = 256;
+
+    /** Bytecode */
+    private static final int                     ALOAD_1        = 0x2b;
+    /** Bytecode */
+    private static final int                     ARETURN        = 0xb0;
+    /** Bytecode */
+    private static final int                     BIPUSH         = 0x10;
+    /** Bytecode */
+    private static final int                     I2L            = 0x85;
+    /** Bytecode */
+    private static final int                     IADD           = 0x60;
+    /** Bytecode */
+    private static final int                     IALOAD         = 0x2e;
+    /** Bytecode */
+    private static final int                     IASTORE        = 0x4f;
+    /** Bytecode */
+    private static final int                     ICONST_0       = 0x03;
+    /** Bytecode */
+    private static final int                     ILOAD_3        = 0x1d;
+    /** Bytecode */
+    private static final int                     IRETURN        = 0xac;
+    /** Bytecode */
+    private static final int                     ISTORE_3       = 0x3e;
+    /** Bytecode */
+    private static final int                     L2I            = 0x88;
+    /** Bytecode */
+    private static final int                     LADD           = 0x61;
+    /** Bytecode */
+    private static final int                     LCONST_0       = 0x09;
+    /** Bytecode */
+    private static final int                     LDC2_W         = 0x14;
+    /** Bytecode */
+    private static final int                     LDIV           = 0x6d;
+    /** Bytecode */
+    private static final int                     LLOAD_1        = 0x1f;
+    /** Bytecode */
+    private static final int                     LLOAD_2        = 0x20;
+    /** Bytecode */
+    private static final int                     LMUL           = 0x69;
+    /** Bytecode */
+    private static final int                     LREM           = 0x71;
+    /** Bytecode */
+    private static final int                     LRETURN        = 0xad;
+    /** Bytecode */
+    private static final int                     LSTORE_1       = 0x40;
+    /** Bytecode */
+    private static final int                     LSTORE_2       = 0x41;
+
+    /** Shapes that have been generated, indexed by multipliers */
+    private static final Map<String, JHPLShape>  SHAPES         = new HashMap<String, JHPLShape>();
+    /** Method for defining classes in this package, null if it is not supported by the runtime */
+    private static final Method                  DEFINE         = getDefine();
+    /** Number of shapes for which code generation failed on a runtime that supports it */
+    private static int                           failures       = 0;
+
+    /**
+     * Returns a shape for the given heights and multipliers
+     * @param heights
+     * @param multiplier
+     * @return
+     */
+    static JHPLShape create(int[] heights, long[] multiplier) {
+        if (isPowerset(heights)) {
+            return new Powerset(multiplier.length);
+        }
+        if (multiplier.length > MAX_DIMENSIONS || DEFINE == null) {
+            return new Generic(multiplier);
+        }
+        String key = Arrays.toString(multiplier);
+        synchronized (SHAPES) {
+            JHPLShape shape = SHAPES.get(key);
+            if (shape == null && SHAPES.size() == MAX_SHAPES) {
+                return new Generic(multiplier);
+            } else if (shape == null) {
+                shape = generate(multiplier, SHAPES.size());
+                SHAPES.put(key, shape);
+            }
+            return shape;
+        }
+    }
+
+    /**
+     * Returns the number of shapes for which code generation failed on a runtime that supports it. 
+     * A generic implementation is used for these shapes.
+     * @return
+     */
+    static int getFailures() {
+        synchronized (SHAPES) {
+            return failures;
+        }
+    }
+
+    /**
+     * Returns whether the heights belong to a powerset lattice, i.e. all dimensions have a height of two
+     * @param heights
+     * @return
+     */
+    static boolean isPowerset(int[] heights) {
+        for (int height : heights) {
+            if (height != 2) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the runtime supports generating code
+     * @return
+     */
+    static boolean isSupported() {
+        return DEFINE != null;
+    }
+
+    /**
+     * Returns the bytecode of a class with the given name, which implements this class for the given multipliers
+     * @param name
+     * @param multiplier
+     * @return
+     * @throws IOException
+     */
+    private static byte[] compile(String name, long[] multiplier) throws IOException {
+
+        // Constant pool: classes, names and descriptors, followed by one entry per multiplier
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream pool = new DataOutputStream(bytes);
+        String[] strings = { name, JHPLShape.class.getName().replace('.', '/'), "<init>", "()V", "Code", 
+                             "toId", "([I)J", "getLevel", "(J)I", "toIndex", "([IJ)[I" };
+        for (String string : strings) {
+            pool.writeByte(1);
+            pool.writeUTF(string);
+        }
+        pool.writeByte(7); // This class: #12
+        pool.writeShort(1);
+        pool.writeByte(7); // Superclass: #13
+        pool.writeShort(2);
+        pool.writeByte(12); // <init>()V: #14
+        pool.writeShort(3);
+        pool.writeShort(4);
+        pool.writeByte(10); // Constructor of the superclass: #15
+        pool.writeShort(13);
+        pool.writeShort(14);
+        int[] constants = new int[multiplier.length];
+        int count = 16;
+        for (int i = 0; i < multiplier.length; i++) {
+            pool.writeByte(5);
+            pool.writeLong(multiplier[i]);
+            constants[i] = count;
+            count += 2;
+        }
+
+        // Code
+        ByteArrayOutputStream init = new ByteArrayOutputStream();
+        init.write(new byte[] { 0x2a, (byte) 0xb7, 0, 15, (byte) 0xb1 }); // aload_0, invokespecial #15, return
+        ByteArrayOutputStream toId = new ByteArrayOutputStream();
+        ByteArrayOutputStream getLevel = new ByteArrayOutputStream();
+        ByteArrayOutputStream toIndex = new ByteArrayOutputStream();
+        getLevel.write(ICONST_0);
+        getLevel.write(ISTORE_3);
+        for (int i = 0; i < multiplier.length; i++) {
+            boolean last = i == multiplier.length - 1;
+            
+            // id += node[i] * multiplier[i]
+            toId.write(ALOAD_1);
+            toId.write(BIPUSH);
+            toId.write(i);
+            toId.write(IALOAD);
+            toId.write(I2L);
+            constant(toId, LMUL, constants[i], multiplier[i]);
+            if (i > 0) {
+                toId.write(LADD);
+            }
+            
+            // level += id / multiplier[i], id %= multiplier[i]
+            getLevel.write(LLOAD_1);
+            constant(getLevel, LDIV, constants[i], multiplier[i]);
+            getLevel.write(L2I);
+            getLevel.write(ILOAD_3);
+            getLevel.write(IADD);
+            getLevel.write(ISTORE_3);
+            remainder(getLevel, LLOAD_1, LSTORE_1, constants[i], multiplier[i], last);
+
+            // result[i] = id / multiplier[i], id %= multiplier[i]
+            toIndex.write(ALOAD_1);
+            toIndex.write(BIPUSH);
+            toIndex.write(i);
+            toIndex.write(LLOAD_2);
+            constant(toIndex, LDIV, constants[i], multiplier[i]);
+            toIndex.write(L2I);
+            toIndex.write(IASTORE);
+            remainder(toIndex, LLOAD_2, LSTORE_2, constants[i], multiplier[i], last);
+        }
+        toId.write(LRETURN);
+        getLevel.write(ILOAD_3);
+        getLevel.write(IRETURN);
+        toIndex.write(ALOAD_1);
+        toIndex.write(ARETURN);
+
+        // Class
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(result);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(50);
+        out.writeShort(count);
+        pool.flush();
+        bytes.writeTo(out);
+        out.writeShort(0x0010 | 0x0020); // final, super
+        out.writeShort(12);
+        out.writeShort(13);
+        out.writeShort(0); // Interfaces
+        out.writeShort(0); // Fields
+        out.writeShort(4);
+        method(out, 0x0001, 3, 4, 1, 1, init);
+        method(out, 0x0010, 6, 7, 6, 2, toId);
+        method(out, 0x0010, 8, 9, 4, 4, getLevel);
+        method(out, 0x0010, 10, 11, 6, 4, toIndex);
+        out.writeShort(0); // Attributes
+        out.flush();
+        return result.toByteArray();
+    }
+
+    /**
+     * Writes the given operation with the given long constant. Operations with a neutral constant are omitted.
+     * @param code
+     * @param operation LMUL or LDIV
+     * @param index
+     * @param value
+     */
+    private static void constant(ByteArrayOutputStream code, int operation, int index, long value) {
+        if (value != 1L) {
+            code.write(LDC2_W);
+            code.write(index >>> 8);
+            code.write(index);
+            code.write(operation);
+        }
+    }
+
+    /**
+     * Generates a shape for the given multipliers. Returns a generic implementation, if this fails.
+     * @param multiplier
+     * @param number
+     * @return
+     */
+    private static JHPLShape generate(long[] multiplier, int number) {
+        try {
+            String name = JHPLShape.class.getName().replace('.', '/') + "$Compiled" + number;
+            Class<?> type = (Class<?>) DEFINE.invoke(MethodHandles.lookup(), (Object) compile(name, multiplier));
+            return (JHPLShape) type.getConstructor().newInstance();
+        } catch (Exception e) {
+            failures++;
+            return new Generic(multiplier);
+        } catch (LinkageError e) {
+            failures++;
+            return new Generic(multiplier);
+        }
+    }
+
+    /**
+     * Returns MethodHandles.Lookup.defineClass(), or null if the runtime does not support it
+     * @return
+     */
+    private static Method getDefine() {
+        try {
+            return MethodHandles.Lookup.class.getMethod("defineClass", byte[].class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a method
+     * @param out
+     * @param flags
+     * @param name
+     * @param descriptor
+     * @param stack
+     * @param locals
+     * @param code
+     * @throws IOException
+     */
+    private static void method(DataOutputStream out, int flags, int name, int descriptor, 
+                               int stack, int locals, ByteArrayOutputStream code) throws IOException {
+        out.writeShort(flags);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(5); // Code
+        out.writeInt(12 + code.size());
+        out.writeShort(stack);
+        out.writeShort(locals);
+        out.writeInt(code.size());
+        code.writeTo(out);
+        out.writeShort(0); // Exceptions
+        out.writeShort(0); // Attributes
+    }
+
+    /**
+     * Writes id %= multiplier, which is omitted for the last dimension. A neutral multiplier clears the id.
+     * @param code
+     * @param load
+     * @param store
+     * @param index
+     * @param value
+     * @param last
+     */
+    private static void remainder(ByteArrayOutputStream code, int load, int store, int index, long value, boolean last) {
+        if (last) {
+            return;
+        }
+        if (value == 1L) {
+            code.write(LCONST_0);
+        } else {
+            code.write(load);
+            code.write(LDC2_W);
+            code.write(index >>> 8);
+            code.write(index);
+            code.write(LREM);
+        }
+        code.write(store);
+    }
+
+    /**
+     * Returns the level of the node with the given identifier
+     * @param id
+     * @return
+     */
+    abstract int getLevel(long id);
+
+    /**
+     * Returns whether this shape has been generated for its multipliers
+     * @return
+     */
+    boolean isCompiled() {
+        return !(this instanceof Generic) && !(this instanceof Powerset);
+    }
+
+    /**
+     * Returns the identifier of the given node
+     * @param node
+     * @return
+     */
+    abstract long toId(int[] node);
+
+    /**
+     * Converts the given identifier into the given array
+     * @param result
+     * @param id
+     * @return
+     */
+    abstract int[] toIndex(int[] result, long id);
+}
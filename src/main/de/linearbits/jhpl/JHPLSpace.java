@@ -12,9 +12,9 @@
 package de.linearbits.jhpl;
 
 import java.lang.reflect.Array;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
+
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
 
 /**
  * This class provides methods for mapping between three different spaces for nodes:
@@ -47,6 +47,51 @@ public class JHPLSpace<T> {
         IdToSourceIterator(Iterator<Long> iter) { super(iter, (T[]) Array.newInstance(elements[0][0].getClass(), elements.length)); }
         @Override protected T[] translate(Long element, T[] result) { return toSource(result, element); }
     }
+    /**
+     * Translation iterator
+     * @author Fabian Prasser
+     */
+    private class IndexToLongIdIterator implements LongIterator {
+        
+        /** Backing iterator */
+        private final Iterator<int[]> iter;
+
+        /**
+         * Creates a new instance
+         * @param iter
+         */
+        IndexToLongIdIterator(Iterator<int[]> iter) {
+            this.iter = iter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iter.hasNext();
+        }
+
+        @Override
+        public long next() {
+            int[] next = iter.next();
+            return next == null ? -1 : toId(next);
+        }
+    }
+    /**
+     * Translation iterator
+     * @author Fabian Prasser
+     */
+    private class LongIdToIndexIterator extends TranslatedLongIterator<int[]> {
+        LongIdToIndexIterator(LongIterator iter) { super(iter, new int[dimensions]); }
+        @Override protected int[] translate(long element, int[] result) { return toIndex(result, element); }
+    }
+    /**
+     * Translation iterator
+     * @author Fabian Prasser
+     */
+    private class LongIdToSourceIterator extends TranslatedLongIterator<T[]> {
+        @SuppressWarnings("unchecked")
+        LongIdToSourceIterator(LongIterator iter) { super(iter, (T[]) Array.newInstance(elements[0][0].getClass(), elements.length)); }
+        @Override protected T[] translate(long element, T[] result) { return toSource(result, element); }
+    }
     /**
      * Translation iterator
      * @author Fabian Prasser
@@ -130,28 +175,96 @@ public class JHPLSpace<T> {
         protected abstract V translate(U element, V result);        
     }
     
+    /** 
+     * An iterator that translates from the id space, represented by primitive longs, into different spaces
+     * @author Fabian Prasser
+     *
+     * @param <V>
+     */
+    private abstract class TranslatedLongIterator<V> implements Iterator<V> {
+        
+        /** Backing iterator */
+        private final LongIterator iter;
+        /** Element */
+        private final V            element;
+
+        /**
+         * Creates a new instance
+         * @param iter
+         * @param element
+         */
+        TranslatedLongIterator(LongIterator iter, V element) {
+            this.iter = iter;
+            this.element = element;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iter.hasNext();
+        }
+
+        @Override
+        public V next() {
+            long next = iter.next();
+            return next == -1 ? null : translate(next, element);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Translation
+         * @param element
+         * @param result
+         * @return
+         */
+        protected abstract V translate(long element, V result);        
+    }
+    
     /** The number of dimensions */
     private final int               dimensions;
 
     /** T[] per dimension */
     private final T[][]             elements;
 
-    /** Map from T to index per dimension */
-    private final Map<T, Integer>[] indices;
+    /** Codec for elements from the source space */
+    private final JHPLCodec<T>      codec;
 
     /** The offsets for each dimension */
     private final long[]            multiplier;
 
+    /** Conversions between nodes and ids */
+    private final JHPLShape         shape;
+
     /** The number of nodes */
     private final long              numNodes;
 
+    /** Packed ids: shift of each dimension within its word */
+    private final int[]             packedShifts;
+
+    /** Packed ids: mask of each dimension */
+    private final long[]            packedMasks;
+
+    /** Packed ids: word of each dimension */
+    private final int[]             packedWords;
+
+    /** Packed ids: number of words, zero if not supported */
+    private final int               packedNumWords;
+
+    /** The offsets for each dimension, for dimensions in which they fit into an int */
+    private final int[]             intMultiplier;
+
+    /** The first dimension from which on the remainder of an id fits into an int */
+    private final int               intDimension;
+
     /**
      * Creates a new instance
      * @param nodes
      * @param elements
      */
     @SafeVarargs
-    @SuppressWarnings("unchecked")
     JHPLSpace(JHPLNodes<T> nodes, T[]... elements){
         this.elements = elements;
         this.dimensions = elements.length;
@@ -160,22 +273,85 @@ public class JHPLSpace<T> {
         for (int i = elements.length - 2; i >= 0; i--) {
             this.multiplier[i] = this.elements[i + 1].length * this.multiplier[i + 1];
         }
-        this.indices = new HashMap[elements.length];
+        this.codec = nodes.getCodec();
+        this.shape = nodes.getShape();
         long nnodes = 1;
         double ndouble = 1d;
         for (int j = 0; j < elements.length; j++) {
             T[] dimension = elements[j];
             nnodes *= (long)dimension.length;
             ndouble *= (double)dimension.length;
-            this.indices[j] = new HashMap<T, Integer>(dimension.length);
-            for (int i = 0; i < dimension.length; i++) {
-                this.indices[j].put(dimension[i], i);
-            }
         }
         if (ndouble > Long.MAX_VALUE) {
             throw new IllegalArgumentException("A JHPL Lattice must not have more than 2^63-1 nodes");
         }
         this.numNodes = nnodes;
+        this.packedShifts = nodes.getPackedShifts();
+        this.packedMasks = nodes.getPackedMasks();
+        this.packedWords = nodes.getPackedWords();
+        this.packedNumWords = nodes.getPackedNumWords();
+        int intDimension = 0;
+        if (nnodes > Integer.MAX_VALUE) {
+            intDimension++;
+            while (intDimension < this.dimensions && this.multiplier[intDimension - 1] > Integer.MAX_VALUE) {
+                intDimension++;
+            }
+        }
+        this.intDimension = intDimension;
+        this.intMultiplier = new int[this.dimensions];
+        for (int i = this.intDimension; i < this.dimensions; i++) {
+            this.intMultiplier[i] = (int) this.multiplier[i];
+        }
+    }
+
+    /**
+     * Computes the levels of the given ids. Writes the results into the given array.
+     * @param ids
+     * @param out
+     */
+    public void levels(long[] ids, int[] out) {
+        levels(ids, ids.length, out);
+    }
+
+    /**
+     * Computes the levels of the first <code>count</code> ids from the given array. 
+     * Writes the results into the given array.
+     * @param ids
+     * @param count
+     * @param out
+     */
+    public void levels(long[] ids, int count, int[] out) {
+        checkBulk(ids.length, count, out.length, count, count);
+        for (int j = 0; j < count; j++) {
+            long id = ids[j];
+            checkId(id);
+            int level = 0;
+            int i = 0;
+            for (; i < intDimension; i++) {
+                long mult = multiplier[i];
+                level += (int) (id / mult);
+                id %= mult;
+            }
+            int remainder = (int) id;
+            for (; i < dimensions; i++) {
+                int mult = intMultiplier[i];
+                level += remainder / mult;
+                remainder %= mult;
+            }
+            out[j] = level;
+        }
+    }
+
+    /**
+     * Returns the number of words needed for representing a node in the packed id space. In this space, 
+     * each dimension is represented by ceil(log2(height)) bits, which means that conversions only require 
+     * shifts and masks. If all bits fit into 63 bits, packed ids are simple longs. Otherwise they are 
+     * represented by two longs (the first one being the most significant). Returns <code>0</code> if
+     * the lattice is too large for being represented in the packed id space.
+     * @return
+     */
+    public int getPackedIdWords() {
+        return packedNumWords;
     }
 
     /**
@@ -187,6 +363,16 @@ public class JHPLSpace<T> {
         return new IdToIndexIterator(iter);
     }
 
+    /**
+     * Constructs an iterator of indexed elements representing the given node in the id space. 
+     * The returned array is reused, no objects are created per element.
+     * @param iter
+     * @return
+     */
+    public Iterator<int[]> idIteratorToIndexIterator(LongIterator iter) {
+        return new LongIdToIndexIterator(iter);
+    }
+
     /**
      * Constructs an iterator of source elements representing the given node in the id space
      * @param iter
@@ -196,6 +382,16 @@ public class JHPLSpace<T> {
         return new IdToSourceIterator(iter);
     }
 
+    /**
+     * Constructs an iterator of source elements representing the given node in the id space. 
+     * The returned array is reused, no objects are created per element.
+     * @param iter
+     * @return
+     */
+    public Iterator<T[]> idIteratorToSourceIterator(LongIterator iter) {
+        return new LongIdToSourceIterator(iter);
+    }
+
     
     /**
      * Constructs an iterator over longs representing the given node in the id space
@@ -206,6 +402,16 @@ public class JHPLSpace<T> {
         return new IndexToIdIterator(iter);
     }
 
+    /**
+     * Constructs an iterator over primitive longs representing the given node in the id space. 
+     * No objects are created per element.
+     * @param iter
+     * @return
+     */
+    public LongIterator indexIteratorToLongIdIterator(Iterator<int[]> iter) {
+        return new IndexToLongIdIterator(iter);
+    }
+
     /**
      * Constructs an iterator of source elements representing the given node in the id space
      * @param iter
@@ -234,18 +440,108 @@ public class JHPLSpace<T> {
     }
 
     /**
-     * Constructs a long representing the given node in the id space
+     * Converts the first <code>count</code> nodes from the given array into the id space. 
+     * The array stores one node after the other, each represented by one index per dimension. 
+     * Writes the results into the given array.
+     * @param flatNodes
+     * @param count
+     * @param out
+     */
+    public void toIds(int[] flatNodes, int count, long[] out) {
+        checkBulk(flatNodes.length, (long) count * dimensions, out.length, count, count);
+        for (int j = 0, offset = 0; j < count; j++) {
+            long id = 0;
+            for (int i = 0; i < dimensions; i++, offset++) {
+                id += (long) flatNodes[offset] * multiplier[i];
+            }
+            out[j] = id;
+        }
+    }
+
+    /**
+     * Converts the given nodes from the source space into the id space. Writes the results into the given array.
+     * @param nodes
+     * @param out
+     */
+    public void toIds(T[][] nodes, long[] out) {
+        checkBulk(nodes.length, nodes.length, out.length, nodes.length, nodes.length);
+        for (int j = 0; j < nodes.length; j++) {
+            T[] node = nodes[j];
+            long id = 0;
+            for (int i = 0; i < dimensions; i++) {
+                id += (long) encode(i, node[i]) * multiplier[i];
+            }
+            out[j] = id;
+        }
+    }
+
+    /**
+     * Converts a node from the packed id space into the id space
+     * @param packedId
+     * @return
+     */
+    public long toIdFromPackedId(long packedId) {
+        checkPackedWords(1);
+        long id = 0;
+        for (int i = 0; i < dimensions; i++) {
+            id += ((packedId >>> packedShifts[i]) & packedMasks[i]) * multiplier[i];
+        }
+        return id;
+    }
+
+    /**
+     * Converts a node from the packed id space into the id space
+     * @param packedId
+     * @return
+     */
+    public long toIdFromPackedId(long[] packedId) {
+        checkPackedWords(packedId.length);
+        long id = 0;
+        for (int i = 0; i < dimensions; i++) {
+            id += ((packedId[packedWords[i]] >>> packedShifts[i]) & packedMasks[i]) * multiplier[i];
+        }
+        return id;
+    }
+
+    /**
+     * Constructs a long representing the given node from the source space in the id space. 
+     * This method can be used for lattices in which each dimension consists of Integers or Longs,
+     * without boxing the elements.
      * @param node
      * @return
      */
-    public long toId(int[] node) {
+    public long toIdFromSource(int[] node) {
         long id = 0;
         for (int i = 0; i < dimensions; i++) {
-            id += (long) node[i] * multiplier[i];
+            id += (long) encode(i, node[i]) * multiplier[i];
+        }
+        return id;
+    }
+
+    /**
+     * Constructs a long representing the given node from the source space in the id space. 
+     * This method can be used for lattices in which each dimension consists of Integers or Longs,
+     * without boxing the elements.
+     * @param node
+     * @return
+     */
+    public long toIdFromSource(long[] node) {
+        long id = 0;
+        for (int i = 0; i < dimensions; i++) {
+            id += (long) encode(i, node[i]) * multiplier[i];
         }
         return id;
     }
 
+    /**
+     * Constructs a long representing the given node in the id space
+     * @param node
+     * @return
+     */
+    public long toId(int[] node) {
+        return shape.toId(node);
+    }
+
     /**
      * Constructs a long representing the given node in the id space
      * @param node
@@ -254,7 +550,7 @@ public class JHPLSpace<T> {
     public long toId(T[] node) {
         long id = 0;
         for (int i = 0; i < dimensions; i++) {
-            id += (long) indices[i].get(node[i]) * multiplier[i];
+            id += (long) encode(i, node[i]) * multiplier[i];
         }
         return id;
     }
@@ -262,20 +558,121 @@ public class JHPLSpace<T> {
     
 
     /**
-     * Constructs an array representing the given node in the index space. Reuses the given array.
+     * Converts the first <code>count</code> ids from the given array into the index space.
+     * The results are written into the given array, one node after the other, each represented 
+     * by one index per dimension.
+     * @param ids
+     * @param count
+     * @param flatOut
+     */
+    public void toIndices(long[] ids, int count, int[] flatOut) {
+        checkBulk(ids.length, count, flatOut.length, (long) count * dimensions, count);
+        for (int j = 0, offset = 0; j < count; j++) {
+            long id = ids[j];
+            checkId(id);
+            int i = 0;
+            for (; i < intDimension; i++, offset++) {
+                long mult = multiplier[i];
+                flatOut[offset] = (int) (id / mult);
+                id %= mult;
+            }
+            int remainder = (int) id;
+            for (; i < dimensions; i++, offset++) {
+                int mult = intMultiplier[i];
+                flatOut[offset] = remainder / mult;
+                remainder %= mult;
+            }
+        }
+    }
+
+    /**
+     * Converts the given nodes from the source space into the index space.
+     * The results are written into the given array, one node after the other, each represented 
+     * by one index per dimension.
+     * @param nodes
+     * @param flatOut
+     */
+    public void toIndices(T[][] nodes, int[] flatOut) {
+        checkBulk(nodes.length, nodes.length, flatOut.length, (long) nodes.length * dimensions, nodes.length);
+        for (int j = 0, offset = 0; j < nodes.length; j++) {
+            T[] node = nodes[j];
+            for (int i = 0; i < dimensions; i++, offset++) {
+                flatOut[offset] = encode(i, node[i]);
+            }
+        }
+    }
+
+    /**
+     * Constructs an array representing the given node from the packed id space in the index space. 
+     * Reuses the given array.
+     * @param result
+     * @param packedId
+     * @return
+     */
+    public int[] toIndexFromPackedId(int[] result, long packedId) {
+        checkPackedWords(1);
+        for (int i = 0; i < dimensions; i++) {
+            result[i] = (int)((packedId >>> packedShifts[i]) & packedMasks[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Constructs an array representing the given node from the packed id space in the index space. 
+     * Reuses the given array.
+     * @param result
+     * @param packedId
+     * @return
+     */
+    public int[] toIndexFromPackedId(int[] result, long[] packedId) {
+        checkPackedWords(packedId.length);
+        for (int i = 0; i < dimensions; i++) {
+            result[i] = (int)((packedId[packedWords[i]] >>> packedShifts[i]) & packedMasks[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Constructs an array representing the given node from the source space in the index space. 
+     * Reuses the given array. This method can be used for lattices in which each dimension consists 
+     * of Integers or Longs, without boxing the elements.
      * @param result
      * @param node
      * @return
      */
-    public int[] toIndex(int[] result, long id) {
-        checkId(id);
+    public int[] toIndexFromSource(int[] result, int[] node) {
         for (int i = 0; i < dimensions; i++) {
-            result[i] = (int)(id / multiplier[i]);
-            id %= multiplier[i];
+            result[i] = encode(i, node[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Constructs an array representing the given node from the source space in the index space. 
+     * Reuses the given array. This method can be used for lattices in which each dimension consists 
+     * of Integers or Longs, without boxing the elements.
+     * @param result
+     * @param node
+     * @return
+     */
+    public int[] toIndexFromSource(int[] result, long[] node) {
+        for (int i = 0; i < dimensions; i++) {
+            result[i] = encode(i, node[i]);
         }
         return result;
     }
 
+    /**
+     * Constructs an array representing the given node in the index space. Reuses the given array.
+     * @param result
+     * @param node
+     * @return
+     */
+    public int[] toIndex(int[] result, long id) {
+        checkId(id);
+        return shape.toIndex(result, id);
+    }
+
     /**
      * Constructs an array representing the given node in the index space. Reuses the given array.
      * @param result
@@ -284,7 +681,7 @@ public class JHPLSpace<T> {
      */
     public int[] toIndex(int[] result, T[] node) {
         for (int i = 0; i < dimensions; i++) {
-            result[i] = indices[i].get(node[i]);
+            result[i] = encode(i, node[i]);
         }
         return result;
     }
@@ -295,13 +692,7 @@ public class JHPLSpace<T> {
      * @return
      */
     public int[] toIndex(long id) {
-        int[] result = new int[dimensions];
-        for (int i = 0; i < dimensions; i++) {
-            long mult = multiplier[i];
-            result[i] = (int)(id / mult);
-            id %= mult;
-        }
-        return result;
+        return shape.toIndex(new int[dimensions], id);
     }
 
     /**
@@ -314,6 +705,76 @@ public class JHPLSpace<T> {
     }
 
 
+    /**
+     * Constructs a long representing the given node in the packed id space. Requires packed ids that fit
+     * into a single word.
+     * @param node
+     * @return
+     */
+    public long toPackedId(int[] node) {
+        checkPackedWords(1);
+        long packedId = 0;
+        for (int i = 0; i < dimensions; i++) {
+            packedId |= (long) node[i] << packedShifts[i];
+        }
+        return packedId;
+    }
+
+    /**
+     * Constructs an array of longs representing the given node in the packed id space. Reuses the given array.
+     * @param result
+     * @param node
+     * @return
+     */
+    public long[] toPackedId(long[] result, int[] node) {
+        checkPackedWords(result.length);
+        for (int i = 0; i < packedNumWords; i++) {
+            result[i] = 0L;
+        }
+        for (int i = 0; i < dimensions; i++) {
+            result[packedWords[i]] |= (long) node[i] << packedShifts[i];
+        }
+        return result;
+    }
+
+    /**
+     * Converts a node from the id space into the packed id space. Requires packed ids that fit
+     * into a single word.
+     * @param id
+     * @return
+     */
+    public long toPackedIdFromId(long id) {
+        checkPackedWords(1);
+        checkId(id);
+        long packedId = 0;
+        for (int i = 0; i < dimensions; i++) {
+            long mult = multiplier[i];
+            packedId |= (id / mult) << packedShifts[i];
+            id %= mult;
+        }
+        return packedId;
+    }
+
+    /**
+     * Converts a node from the id space into the packed id space. Reuses the given array.
+     * @param result
+     * @param id
+     * @return
+     */
+    public long[] toPackedIdFromId(long[] result, long id) {
+        checkPackedWords(result.length);
+        checkId(id);
+        for (int i = 0; i < packedNumWords; i++) {
+            result[i] = 0L;
+        }
+        for (int i = 0; i < dimensions; i++) {
+            long mult = multiplier[i];
+            result[packedWords[i]] |= (id / mult) << packedShifts[i];
+            id %= mult;
+        }
+        return result;
+    }
+
     /**
      * Constructs an array representing the given node in the source space.
      * @param node
@@ -369,6 +830,61 @@ public class JHPLSpace<T> {
         return result;
     }
 
+    /**
+     * Returns the index of the given element
+     * @param dimension
+     * @param element
+     * @return
+     */
+    private int encode(int dimension, long element) {
+        int index = codec.encode(dimension, element);
+        if (index < 0) { throw new IllegalArgumentException("Unknown element: " + element); }
+        return index;
+    }
+
+    /**
+     * Returns the index of the given element
+     * @param dimension
+     * @param element
+     * @return
+     */
+    private int encode(int dimension, T element) {
+        if (element == null) { throw new NullPointerException("Elements must not contain null"); }
+        int index = codec.encode(dimension, element);
+        if (index < 0) { throw new IllegalArgumentException("Unknown element: " + element); }
+        return index;
+    }
+
+    /**
+     * Checks the arguments of bulk operations
+     * @param inLength
+     * @param inRequired
+     * @param outLength
+     * @param outRequired
+     * @param count
+     */
+    private void checkBulk(int inLength, long inRequired, int outLength, long outRequired, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative");
+        } else if (inLength < inRequired) {
+            throw new IllegalArgumentException("Input array is too small");
+        } else if (outLength < outRequired) {
+            throw new IllegalArgumentException("Output array is too small");
+        }
+    }
+
+    /**
+     * Checks whether packed ids with the given number of words are supported
+     * @param words
+     */
+    private void checkPackedWords(int words) {
+        if (packedNumWords == 0) {
+            throw new UnsupportedOperationException("Lattice is too large for packed ids");
+        } else if (words < packedNumWords) {
+            throw new UnsupportedOperationException("Packed ids of this lattice require " + packedNumWords + " words");
+        }
+    }
+
     /**
      * Checks the id
      * @param id
@@ -14,8 +14,10 @@ package de.linearbits.jhpl;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import de.linearbits.jhpl.JHPLIterator.LongIterator;
 import de.linearbits.jhpl.JHPLIterator.TrieIterator;
@@ -23,13 +25,63 @@ import de.linearbits.jhpl.JHPLStack.IntegerStack;
 import de.linearbits.jhpl.JHPLStack.LongStack;
 
 /**
- * This class implements a simple trie for integers that is materialized in a backing integer array
+ * This class implements a simple trie for integers that is materialized in a backing integer array.
+ * In tries with pruning, each page consists of a header, the slots and a trailer. The header holds the minimal 
+ * (or maximal) level sum of the suffixes stored below the page and the trailer holds the minimal (or maximal)
+ * value of these suffixes in each of the following dimensions. Both only depend on the subtree.
+ * Pages in dimensions with many values, except the root page, may be sparse. Such pages have an additional header
+ * cell, which holds the capacity of a sparse page or zero for a dense page. Sparse pages store a bitmap of the
+ * available values, followed by the slots of these values in ascending order. They are moved when they are full
+ * and replaced by dense pages when they would not be smaller. Slots must therefore be accessed via get(), set(), 
+ * remove(), ceiling() and floor(). Slots in the last dimension only hold flags. Pages in this dimension, except
+ * the root page, therefore only store a bitmap of the available values. As pages never span two arrays of the
+ * buffer, helpers that take an array address pages by their position within this array.
  * @author Fabian Prasser
  */
 abstract class JHPLTrie {
 
+    /**
+     * A page used as a key for hash-consing
+     * @author Fabian Prasser
+     */
+    private static class Page {
+
+        /** Dimension */
+        private final int   dimension;
+        /** Content, without header */
+        private final int[] content;
+        /** Hash code */
+        private final int   hashCode;
+
+        /**
+         * Creates a new instance
+         * @param dimension
+         * @param content
+         */
+        Page(int dimension, int[] content) {
+            this.dimension = dimension;
+            this.content = content;
+            this.hashCode = 31 * dimension + Arrays.hashCode(content);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            Page other = (Page) obj;
+            return dimension == other.dimension && Arrays.equals(content, other.content);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     /** Constant */
     protected static final double COMPACTION_THRESHOLD = 0.2d;
+    /** Constant: minimal height of dimensions with sparse pages */
+    protected static final int    SPARSE_THRESHOLD     = 16;
+    /** Constant: initial capacity of sparse pages */
+    protected static final int    SPARSE_CAPACITY      = 2;
 
     /** The buffer */
     protected final JHPLBuffer    buffer;
@@ -47,26 +99,75 @@ abstract class JHPLTrie {
     protected boolean             pruning;
     /** Default bound for pruning */
     protected final int           bound;
+    /** Are pages shared between multiple parents */
+    protected boolean             shared;
+    /** The dimensions of the lattice in the order in which they are stored */
+    protected final int[]         order;
+    /** Whether the order equals the order of the lattice */
+    protected final boolean       identity;
+    /** The number of dimensions of the lattice, including trivial ones */
+    protected final int           width;
+    /** Whether pages in each dimension may be sparse */
+    protected final boolean[]     sparse;
+    /** Whether pages in each dimension only hold flags, which are stored as a bitmap */
+    protected final boolean[]     flags;
+    /** Offset of the slots, or of the bitmap of sparse pages, in each dimension */
+    protected final int[]         first;
+    /** Number of words of the bitmap of sparse pages or pages with flags in each dimension */
+    protected final int[]         words;
+    /** Packed copy of small frontiers, null if not available */
+    protected JHPLFrontier        frontier;
+    /** Whether dense pages end with a counter of the slots that are JHPLBuffer.FLAG_AVAILABLE */
+    protected final boolean       counting;
+    /** Element in the order of the trie, reused by conversions */
+    protected final int[]         converted;
 
     /**
      * Constructs a new trie
      * @param lattice
      * @param pruning
+     * @param bound
+     * @param counting
      */
-    JHPLTrie(Lattice<?, ?> lattice, boolean pruning, int bound) {
+    JHPLTrie(Lattice<?, ?> lattice, boolean pruning, int bound, boolean counting) {
         
-        // Initialize. Root node will be at offset 0
-        this.dimensions = lattice.nodes().getDimensions();
-        this.heights = lattice.nodes().getHeights();
-        this.buffer = new JHPLBuffer();
-        this.buffer.allocate(heights[0] + (pruning ? 1 : 0));
-        this.bound = bound;
-        if (pruning) {
-            this.buffer.memory[0] = (bound == Integer.MAX_VALUE) ? Integer.MAX_VALUE - 1 : Integer.MIN_VALUE + 1;
+        // Initialize. Dimensions are permuted and trivial dimensions are removed. 
+        this.width = lattice.nodes().getDimensions();
+        this.order = lattice.nodes().getOrder();
+        this.dimensions = order.length;
+        this.heights = new int[dimensions];
+        boolean identity = dimensions == width;
+        for (int i = 0; i < dimensions; i++) {
+            this.heights[i] = lattice.nodes().getHeights()[order[i]];
+            identity &= order[i] == i;
         }
-        this.used = heights[0] + (pruning ? 1 : 0);
+        this.identity = identity;
+        this.counting = counting;
+        this.converted = new int[dimensions];
+        
+        // Page formats. The root page is always dense. Slots in the last dimension only hold flags.
+        this.sparse = new boolean[dimensions];
+        this.flags = new boolean[dimensions];
+        this.first = new int[dimensions];
+        this.words = new int[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            this.flags[i] = i > 0 && i == dimensions - 1;
+            this.sparse[i] = i > 0 && !flags[i] && heights[i] >= SPARSE_THRESHOLD;
+            this.first[i] = (pruning ? 1 : 0) + (sparse[i] ? 1 : 0);
+            this.words[i] = sparse[i] || flags[i] ? (heights[i] + 31) >>> 5 : 0;
+        }
+        
+        // Root node will be at offset 0. Each page must fit into an array of the buffer.
+        int size = 0;
+        for (int i = 0; i < dimensions; i++) {
+            size = Math.max(size, first[i] + heights[i] + (counting ? 1 : 0) + (pruning ? dimensions - i - 1 : 0));
+        }
+        this.buffer = new JHPLBuffer(size);
+        this.bound = bound;
         this.lattice = lattice;
         this.pruning = pruning;
+        this.used = 0;
+        this.allocate(0);
         int sum = 0;
         for (int i = 0; i < this.heights.length; i++) {
             sum += this.heights[i] - 1;
@@ -79,13 +180,13 @@ abstract class JHPLTrie {
      * <code>null</code> is returned.
      * @return
      */
-    private TrieIterator _iterator() {
+    TrieIterator _iterator() {
         
         // Initialize
         final int[] element = new int[this.dimensions];
+        final int[] result = new int[this.width];
         final IntegerStack offsets = new IntegerStack(this.dimensions);
         final IntegerStack pointers = new IntegerStack(this.dimensions);
-        final int offset = pruning ? 1 : 0;
         offsets.push(0);
         pointers.push(0);
         element[0] = 0;
@@ -115,31 +216,267 @@ abstract class JHPLTrie {
                         }
                     }
                     
-                    // Check and increment
-                    int mem = buffer.memory[pointers.peek() + offsets.peek() + offset];
-                    offsets.inc();
-                
-                    // If available
-                    if (mem != JHPLBuffer.FLAG_NOT_AVAILABLE) {
-            
-                        int dimension = offsets.size() - 1;
-                        level -= element[dimension];
-                        element[dimension] = offsets.peek() - 1;
-                        level += element[dimension];
-                        if (offsets.size() < dimensions) {
-                            // Inner node
-                            offsets.push(0);
-                            pointers.push(mem);
-                        } else {
-                            // Leaf node
-                            return element;
-                        }
+                    // Find the next available value. Pages of full subtrees are not materialized.
+                    int pointer = pointers.peek();
+                    int dimension = offsets.size() - 1;
+                    int value = ceiling(pointer, dimension, offsets.pop());
+                    if (value == heights[dimension]) {
+                        offsets.push(value);
+                        continue;
+                    }
+                    offsets.push(value + 1);
+                    int mem = get(pointer, dimension, value);
+
+                    // Available
+                    level -= element[dimension];
+                    element[dimension] = value;
+                    level += element[dimension];
+                    if (offsets.size() < dimensions) {
+                        // Inner node
+                        offsets.push(0);
+                        pointers.push(mem);
+                    } else {
+                        // Leaf node
+                        return toLattice(element, result);
                     }
                 }
             }
         };
     }
 
+    /**
+     * Rebuilds the frontier from the trie, if it has been dropped because it grew too large and if the
+     * elements fit into a frontier again
+     */
+    private void rebuild() {
+        if (frontier != null) {
+            return;
+        }
+        JHPLFrontier result = newFrontier();
+        if (result == null) {
+            return;
+        }
+        TrieIterator iterator = _iterator();
+        int[] element = new int[dimensions];
+        for (int[] node = iterator.next(); node != null; node = iterator.next()) {
+            if (!result.put(toTrie(node, element))) {
+                return;
+            }
+        }
+        frontier = result;
+    }
+
+    /**
+     * Copies the given page and all pages reachable from it into the given buffer. The format of each
+     * copy is chosen by the number of available values. Returns the offset of the copy.
+     * @param buffer
+     * @param target
+     * @param source
+     * @param dimension
+     * @param slots buffers for the slots of the pages in each dimension
+     * @return
+     */
+    private int compactify(JHPLBuffer buffer, JHPLBuffer target, int source, int dimension, int[][] slots) {
+        int[] content = slots[dimension];
+        int destination = allocate(target, dimension, read(buffer, source, dimension, content));
+        for (int i = 0; i < content.length; i++) {
+            int mem = content[i];
+            if (dimension < dimensions - 1 && mem != JHPLBuffer.FLAG_NOT_AVAILABLE && mem != JHPLBuffer.FLAG_AVAILABLE) {
+                content[i] = compactify(buffer, target, mem, dimension + 1, slots);
+            }
+        }
+        write(buffer, source, target, destination, dimension, content);
+        return destination;
+    }
+
+    /**
+     * Copies the given page into the given buffer, sharing it with all structurally identical pages
+     * that have already been copied. Returns the offset of the page in the target buffer.
+     * @param target
+     * @param pages
+     * @param copies
+     * @param source
+     * @param dimension
+     * @return
+     */
+    private int deduplicate(JHPLBuffer target, Map<Page, Integer> pages, int[] copies, int source, int dimension) {
+
+        // Pages may already be shared
+        if (copies[source] != 0) {
+            return copies[source];
+        }
+        
+        // Copy children first
+        int[] content = new int[heights[dimension]];
+        int count = read(buffer, source, dimension, content);
+        for (int i = 0; i < content.length; i++) {
+            int mem = content[i];
+            if (dimension < dimensions - 1 && mem != JHPLBuffer.FLAG_NOT_AVAILABLE && mem != JHPLBuffer.FLAG_AVAILABLE) {
+                content[i] = deduplicate(target, pages, copies, mem, dimension + 1);
+            }
+        }
+        
+        // Share with an existing page. Summaries of outdated pages are merged conservatively.
+        Page page = new Page(dimension, content);
+        Integer pointer = pages.get(page);
+        if (pointer != null) {
+            if (pruning) {
+                merge(target, pointer, buffer.get(source));
+                int cell = trailer(target, pointer, dimension);
+                int other = trailer(source, dimension);
+                for (int i = 0; i < dimensions - dimension - 1; i++) {
+                    merge(target, cell + i, buffer.get(other + i));
+                }
+            }
+        } else {
+            pointer = allocate(target, dimension, count);
+            write(buffer, source, target, pointer, dimension, content);
+            pages.put(page, pointer);
+        }
+        
+        // Return
+        copies[source] = pointer;
+        return pointer;
+    }
+
+    /**
+     * Grows the given sparse page, which is full. Returns the offset of the new page, which
+     * may be dense.
+     * @param page
+     * @param dimension
+     * @param count
+     * @return
+     */
+    private int grow(int page, int dimension, int count) {
+        int[] content = new int[heights[dimension]];
+        read(buffer, page, dimension, content);
+        int size = pageSize(page, dimension);
+        int pointer = allocate(buffer, dimension, Math.max(count * 2, SPARSE_CAPACITY));
+        write(buffer, page, buffer, pointer, dimension, content);
+        used += pageSize(pointer, dimension) - size;
+        buffer.free(page, size);
+        return pointer;
+    }
+
+    /**
+     * Returns whether the given page is sparse
+     * @param memory
+     * @param page
+     * @param dimension
+     * @return
+     */
+    private boolean isSparse(int[] memory, int page, int dimension) {
+        return sparse[dimension] && memory[page + first[dimension] - 1] != 0;
+    }
+
+    /**
+     * Returns the number of cells that hold the slots of the given page
+     * @param memory
+     * @param page
+     * @param dimension
+     * @return
+     */
+    private int length(int[] memory, int page, int dimension) {
+        if (flags[dimension]) {
+            return words[dimension];
+        }
+        if (isSparse(memory, page, dimension)) {
+            return words[dimension] + memory[page + first[dimension] - 1];
+        }
+        return counting ? heights[dimension] + 1 : heights[dimension];
+    }
+
+    /**
+     * Merges the given summary into the given cell
+     * @param target
+     * @param cell
+     * @param value
+     */
+    private void merge(JHPLBuffer target, int cell, int value) {
+        int other = target.get(cell);
+        target.set(cell, bound == Integer.MAX_VALUE ? Math.min(value, other) : Math.max(value, other));
+    }
+
+    /**
+     * Returns the size of the given page
+     * @param memory
+     * @param page
+     * @param dimension
+     * @return
+     */
+    private int pageSize(int[] memory, int page, int dimension) {
+        return first[dimension] + length(memory, page, dimension) + (pruning ? dimensions - dimension - 1 : 0);
+    }
+
+    /**
+     * Returns the number of values in the given sparse page that are less than the given value
+     * @param memory
+     * @param bitmap
+     * @param dimension
+     * @param value
+     * @return
+     */
+    private int rank(int[] memory, int bitmap, int dimension, int value) {
+        int word = value >>> 5;
+        int rank = 0;
+        for (int i = 0; i < word; i++) {
+            rank += Integer.bitCount(memory[bitmap + i]);
+        }
+        return word == words[dimension] ? rank : rank + Integer.bitCount(memory[bitmap + word] & ((1 << value) - 1));
+    }
+
+    /**
+     * Reads the slots of the given page. Returns the number of available values.
+     * @param buffer
+     * @param page
+     * @param dimension
+     * @param slots
+     * @return
+     */
+    private int read(JHPLBuffer buffer, int page, int dimension, int[] slots) {
+        int[] memory = buffer.chunk(page);
+        int offset = buffer.offset(page);
+        int start = offset + first[dimension];
+        int count = 0;
+        if (flags[dimension]) {
+            for (int i = 0; i < slots.length; i++) {
+                boolean available = (memory[start + (i >>> 5)] & (1 << i)) != 0;
+                slots[i] = available ? JHPLBuffer.FLAG_AVAILABLE : JHPLBuffer.FLAG_NOT_AVAILABLE;
+                count += available ? 1 : 0;
+            }
+        } else if (isSparse(memory, offset, dimension)) {
+            Arrays.fill(slots, JHPLBuffer.FLAG_NOT_AVAILABLE);
+            int pointers = start + words[dimension];
+            for (int i = 0; i < words[dimension]; i++) {
+                int bits = memory[start + i];
+                while (bits != 0) {
+                    slots[(i << 5) + Integer.numberOfTrailingZeros(bits)] = memory[pointers + count++];
+                    bits &= bits - 1;
+                }
+            }
+        } else {
+            System.arraycopy(memory, start, slots, 0, slots.length);
+            for (int slot : slots) {
+                if (slot != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns buffers for the slots of a page in each dimension
+     * @return
+     */
+    private int[][] slots() {
+        int[][] slots = new int[dimensions][];
+        for (int i = 0; i < dimensions; i++) {
+            slots[i] = new int[heights[i]];
+        }
+        return slots;
+    }
+
     /**
      * Helper for converting the trie to a string
      * @param prefix
@@ -151,38 +488,206 @@ abstract class JHPLTrie {
     private StringBuilder toString(String prefix, boolean isTail, int offset, int dimension) {
         StringBuilder builder = new StringBuilder();
         List<Integer> children = new ArrayList<Integer>();
-        for (int i = offset; i<offset + heights[dimension]; i++) {
-            if (buffer.memory[i + (pruning ? 1 : 0)] != JHPLBuffer.FLAG_NOT_AVAILABLE) {
-                children.add(i);
-            }
+        for (int i = ceiling(offset, dimension, 0); i < heights[dimension]; i = ceiling(offset, dimension, i + 1)) {
+            children.add(i);
         }
-        int level = buffer.memory[offset];
+        int level = buffer.get(offset);
         for (int j = 0; j < children.size() - 1; j++) {
             int i = children.get(j);
-            builder.append(prefix).append(isTail ? "+-- " : "+-- ").append("[").append(i - offset).append(pruning ? "] lvl {"+level+"}" : "]").append("\n");
-            if (dimension != dimensions - 1) {
-                builder.append(toString(prefix + (isTail ? "    " : "|   "), false, buffer.memory[i + (pruning ? 1 : 0)], dimension + 1));
+            builder.append(prefix).append(isTail ? "+-- " : "+-- ").append("[").append(i).append(pruning ? "] lvl {"+level+"}" : "]").append("\n");
+            if (dimension != dimensions - 1 && get(offset, dimension, i) == JHPLBuffer.FLAG_AVAILABLE) {
+                builder.append(prefix + (isTail ? "    " : "|   ")).append("+-- [*]\n");
+            } else if (dimension != dimensions - 1) {
+                builder.append(toString(prefix + (isTail ? "    " : "|   "), false, get(offset, dimension, i), dimension + 1));
             }
         }
         if (children.size() > 0) {
             int i = children.get(children.size() - 1);
-            builder.append(prefix).append(isTail ? "+-- " : "+-- ").append("[").append(i - offset).append(pruning ? "] lvl {"+level+"}" : "]").append("\n");
-            if (dimension != dimensions - 1) {
-                builder.append(toString(prefix + (isTail ? "    " : "|   "), true, buffer.memory[i + (pruning ? 1 : 0)], dimension + 1));
+            builder.append(prefix).append(isTail ? "+-- " : "+-- ").append("[").append(i).append(pruning ? "] lvl {"+level+"}" : "]").append("\n");
+            if (dimension != dimensions - 1 && get(offset, dimension, i) == JHPLBuffer.FLAG_AVAILABLE) {
+                builder.append(prefix + "    ").append("+-- [*]\n");
+            } else if (dimension != dimensions - 1) {
+                builder.append(toString(prefix + (isTail ? "    " : "|   "), true, get(offset, dimension, i), dimension + 1));
             }
         }
         return builder;
     }
+
+    /**
+     * Returns the offset of the trailer of the given page in the given buffer
+     * @param buffer
+     * @param page
+     * @param dimension
+     * @return
+     */
+    private int trailer(JHPLBuffer buffer, int page, int dimension) {
+        int offset = buffer.offset(page);
+        return page - offset + trailer(buffer.chunk(page), offset, dimension);
+    }
+
+    /**
+     * Writes the given slots into the given page, which has been allocated for them, and copies
+     * the summaries of the given source page
+     * @param buffer
+     * @param source
+     * @param target
+     * @param page
+     * @param dimension
+     * @param slots
+     */
+    private void write(JHPLBuffer buffer, int source, JHPLBuffer target, int page, int dimension, int[] slots) {
+        int[] memory = target.chunk(page);
+        int offset = target.offset(page);
+        int start = offset + first[dimension];
+        if (flags[dimension]) {
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                    memory[start + (i >>> 5)] |= 1 << i;
+                }
+            }
+        } else if (isSparse(memory, offset, dimension)) {
+            int pointers = start + words[dimension];
+            int count = 0;
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                    memory[start + (i >>> 5)] |= 1 << i;
+                    memory[pointers + count++] = slots[i];
+                }
+            }
+        } else {
+            System.arraycopy(slots, 0, memory, start, slots.length);
+            if (counting) {
+                int count = 0;
+                for (int slot : slots) {
+                    count += slot == JHPLBuffer.FLAG_AVAILABLE ? 1 : 0;
+                }
+                memory[start + slots.length] = count;
+            }
+        }
+        if (pruning) {
+            int[] other = buffer.chunk(source);
+            int base = buffer.offset(source);
+            memory[offset] = other[base];
+            System.arraycopy(other, trailer(other, base, dimension), 
+                             memory, trailer(memory, offset, dimension), dimensions - dimension - 1);
+        }
+    }
     
+    /**
+     * Returns whether the subtree at the given page does not contain elements on the given level
+     * @param pointer
+     * @param prefix level of the prefix
+     * @param level
+     * @return
+     */
+    private boolean isPruned(int pointer, int prefix, int level) {
+        if (!pruning || pointer == JHPLBuffer.FLAG_AVAILABLE) {
+            return false;
+        }
+        int remaining = buffer.get(pointer);
+        return bound == Integer.MAX_VALUE ? prefix + remaining > level : prefix + remaining < level;
+    }
+
+    /**
+     * Allocates and initializes a new page for the given dimension. Returns its offset.
+     * @param dimension
+     * @return
+     */
+    int allocate(int dimension) {
+        int pointer = allocate(buffer, dimension, SPARSE_CAPACITY);
+        int size = pageSize(pointer, dimension);
+        used += size;
+        if (pruning) {
+            int empty = (bound == Integer.MAX_VALUE) ? Integer.MAX_VALUE - 1 : Integer.MIN_VALUE + 1;
+            int[] memory = buffer.chunk(pointer);
+            int offset = buffer.offset(pointer);
+            memory[offset] = empty;
+            Arrays.fill(memory, trailer(memory, offset, dimension), offset + size, empty);
+        }
+        return pointer;
+    }
+
+    /**
+     * Allocates a page for the given number of values in the given buffer. Pages are sparse, if this
+     * is supported in the dimension and if they are smaller than dense pages. Returns the offset.
+     * @param target
+     * @param dimension
+     * @param capacity
+     * @return
+     */
+    int allocate(JHPLBuffer target, int dimension, int capacity) {
+        return allocate(target, dimension, capacity, false);
+    }
+
+    /**
+     * Allocates a page for the given number of values in the given buffer. Pages are sparse, if this
+     * is supported in the dimension and if they are smaller than dense pages. Returns the offset.
+     * @param target
+     * @param dimension
+     * @param capacity
+     * @param aligned whether the page should be aligned to cache lines
+     * @return
+     */
+    int allocate(JHPLBuffer target, int dimension, int capacity, boolean aligned) {
+        capacity = Math.max(capacity, 1);
+        boolean sparse = this.sparse[dimension] && words[dimension] + capacity < heights[dimension];
+        int size = first[dimension] + (sparse ? words[dimension] + capacity : flags[dimension] ? words[dimension] : heights[dimension]);
+        size = counting && !sparse && !flags[dimension] ? size + 1 : size;
+        size = pruning ? size + dimensions - dimension - 1 : size;
+        int pointer = aligned ? target.allocateAligned(size) : target.allocate(size);
+        if (sparse) {
+            target.set(pointer + first[dimension] - 1, capacity);
+        }
+        return pointer;
+    }
+
+    /**
+     * Returns the next value that is available in the given page and greater than or equal to the
+     * given value. Returns the height of the dimension, if there is no such value.
+     * @param page
+     * @param dimension
+     * @param value
+     * @return
+     */
+    int ceiling(int page, int dimension, int value) {
+        int height = heights[dimension];
+        if (page == JHPLBuffer.FLAG_AVAILABLE || value >= height) {
+            return Math.min(value, height);
+        }
+        int[] memory = buffer.chunk(page);
+        int offset = buffer.offset(page);
+        int start = offset + first[dimension];
+        if (!flags[dimension] && !isSparse(memory, offset, dimension)) {
+            while (value < height && memory[start + value] == JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                value++;
+            }
+            return value;
+        }
+        int word = value >>> 5;
+        int bits = memory[start + word] & (-1 << value);
+        while (bits == 0) {
+            if (++word == words[dimension]) {
+                return height;
+            }
+            bits = memory[start + word];
+        }
+        return (word << 5) + Integer.numberOfTrailingZeros(bits);
+    }
+
     /**
      * Clears all above/below this element
      * @param element
      */
     void clear(int[] element) {
+        this.unshare();
+        element = toTrie(element);
+        if (frontier != null) {
+            frontier.clear(element);
+        }
         this.clear(element, 0, 0);
         
         // Compaction
-        double utilization = (double)used / (double)buffer.memory.length;
+        double utilization = (double)used / (double)buffer.capacity();
         if (utilization < COMPACTION_THRESHOLD) {
             compactify();
         }
@@ -191,28 +696,77 @@ abstract class JHPLTrie {
     abstract boolean clear(int[] element, int dimension, int offset);
         
     /**
-     * Compaction method on the trie
+     * Compaction method on the trie. Copies all pages that are reachable from the root into a new buffer.
      */
     void compactify() {
-        
-        TrieIterator iterator = this._iterator();
-        JHPLTrie other = newInstance();
-        int[] element = iterator.next();
-        int level = iterator.level();
-        while (element != null) {
-            other.put(element, level);
-            element = iterator.next();
-            level = iterator.level();
+        JHPLBuffer other = buffer.newInstance();
+        this.compactify(this.buffer, other, 0, 0, slots());
+        this.buffer.replace(other);
+        this.used = other.used();
+        this.shared = false;
+        this.rebuild();
+    }
+    
+    /**
+     * Replaces the content of this trie with a copy of the given trie, which must have the same structure
+     * @param trie
+     */
+    void copy(JHPLTrie trie) {
+        JHPLBuffer other = buffer.newInstance();
+        this.compactify(trie.buffer, other, 0, 0, slots());
+        this.buffer.replace(other);
+        this.used = other.used();
+        this.shared = false;
+        this.frontier = trie.frontier == null ? null : trie.frontier.copy();
+        this.rebuild();
+    }
+
+    /**
+     * Copies the given page of the given trie and all pages reachable from it into this trie. Returns 
+     * the offset of the copy.
+     * @param trie
+     * @param source
+     * @param dimension
+     * @return
+     */
+    int copy(JHPLTrie trie, int source, int dimension) {
+        int size = buffer.used();
+        int pointer = this.compactify(trie.buffer, this.buffer, source, dimension, slots());
+        this.used += buffer.used() - size;
+        return pointer;
+    }
+
+    /**
+     * Compaction method on the trie, which shares structurally identical pages. This turns the trie into a DAG.
+     * As summaries only depend on the subtree, sharing pages does not reduce the effectiveness of pruning, unless
+     * summaries are outdated. Before the trie is modified, all shared pages will be expanded again.
+     */
+    void deduplicate() {
+        JHPLBuffer other = buffer.newInstance();
+        int[] content = new int[heights[0]];
+        allocate(other, 0, read(buffer, 0, 0, content));
+        int[] copies = new int[buffer.size()];
+        Map<Page, Integer> pages = new HashMap<Page, Integer>();
+        for (int i = 0; i < content.length; i++) {
+            int mem = content[i];
+            if (dimensions > 1 && mem != JHPLBuffer.FLAG_NOT_AVAILABLE && mem != JHPLBuffer.FLAG_AVAILABLE) {
+                content[i] = deduplicate(other, pages, copies, mem, 1);
+            }
         }
-        this.buffer.replace(other.buffer);
+        write(buffer, 0, other, 0, 0, content);
+        this.buffer.replace(other);
+        this.used = other.used();
+        this.shared = true;
+        this.rebuild();
     }
+    
     /**
      * Queries this trie for the given element
      * @param node
      * @return
      */
     boolean contains(int[] node) {
-        return contains(node, bound, 0, 0);
+        return contains(node, bound);
     }
     
 //    abstract void check(int[] element, int offset, int dimension);
@@ -224,7 +778,12 @@ abstract class JHPLTrie {
      * @return
      */
     boolean contains(int[] node, int level) {
-        return contains(node, level, 0, 0);
+        // Frozen lattices may be queried concurrently
+        int[] element = !identity && lattice.isFrozen() ? toTrie(node, new int[dimensions]) : toTrie(node);
+        if (frontier != null) {
+            return frontier.contains(element, level);
+        }
+        return contains(element, level, 0, 0);
     }
 
     /**
@@ -237,12 +796,108 @@ abstract class JHPLTrie {
      */
     abstract boolean contains(int[] element, int level, int dimension, int offset);
 
+    /**
+     * Returns the previous value that is available in the given page and less than or equal to the
+     * given value. Returns -1, if there is no such value.
+     * @param page
+     * @param dimension
+     * @param value
+     * @return
+     */
+    int floor(int page, int dimension, int value) {
+        if (page == JHPLBuffer.FLAG_AVAILABLE || value < 0) {
+            return Math.max(value, -1);
+        }
+        int[] memory = buffer.chunk(page);
+        int offset = buffer.offset(page);
+        int start = offset + first[dimension];
+        if (!flags[dimension] && !isSparse(memory, offset, dimension)) {
+            while (value >= 0 && memory[start + value] == JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                value--;
+            }
+            return value;
+        }
+        int word = value >>> 5;
+        int bits = memory[start + word] & (-1 >>> (31 - (value & 31)));
+        while (bits == 0) {
+            if (--word < 0) {
+                return -1;
+            }
+            bits = memory[start + word];
+        }
+        return (word << 5) + 31 - Integer.numberOfLeadingZeros(bits);
+    }
+
+    /**
+     * Releases the given page and all pages reachable from it
+     * @param page
+     * @param dimension
+     */
+    void free(int page, int dimension) {
+        if (dimension < dimensions - 1) {
+            for (int i = ceiling(page, dimension, 0); i < heights[dimension]; i = ceiling(page, dimension, i + 1)) {
+                int pointer = get(page, dimension, i);
+                if (pointer != JHPLBuffer.FLAG_AVAILABLE) {
+                    free(pointer, dimension + 1);
+                }
+            }
+        }
+        int size = pageSize(page, dimension);
+        buffer.free(page, size);
+        used -= size;
+    }
+
+    /**
+     * Returns the slot of the given value in the given page
+     * @param page
+     * @param dimension
+     * @param value
+     * @return the pointer, JHPLBuffer.FLAG_AVAILABLE or JHPLBuffer.FLAG_NOT_AVAILABLE
+     */
+    int get(int page, int dimension, int value) {
+        if (page == JHPLBuffer.FLAG_AVAILABLE) {
+            return JHPLBuffer.FLAG_AVAILABLE;
+        }
+        int[] memory = buffer.chunk(page);
+        int offset = buffer.offset(page);
+        int start = offset + first[dimension];
+        if (flags[dimension]) {
+            return (memory[start + (value >>> 5)] & (1 << value)) != 0 ? JHPLBuffer.FLAG_AVAILABLE : JHPLBuffer.FLAG_NOT_AVAILABLE;
+        }
+        if (!isSparse(memory, offset, dimension)) {
+            return memory[start + value];
+        }
+        if ((memory[start + (value >>> 5)] & (1 << value)) == 0) {
+            return JHPLBuffer.FLAG_NOT_AVAILABLE;
+        }
+        return memory[start + words[dimension] + rank(memory, start, dimension, value)];
+    }
+
+    /**
+     * Returns whether all slots of the given page are JHPLBuffer.FLAG_AVAILABLE. Requires counting. 
+     * Sparse pages always have fewer slots than the height of their dimension.
+     * @param page
+     * @param dimension
+     * @return
+     */
+    boolean isFull(int page, int dimension) {
+        int[] memory = buffer.chunk(page);
+        int offset = buffer.offset(page);
+        int start = offset + first[dimension];
+        if (flags[dimension]) {
+            return rank(memory, start, dimension, heights[dimension]) == heights[dimension];
+        } else if (isSparse(memory, offset, dimension)) {
+            return false;
+        }
+        return memory[start + heights[dimension]] == heights[dimension];
+    }
+
     /**
      * Returns the memory consumption in bytes
      * @return
      */
     long getByteSize() {
-        return this.buffer.memory.length * 4;
+        return this.buffer.capacity() * 4 + (frontier == null ? 0 : frontier.getByteSize());
     }
     
     /**
@@ -253,6 +908,59 @@ abstract class JHPLTrie {
         return this.levels;
     }
 
+    /**
+     * Compaction method on the trie, which stores pages in breadth-first order. Pages of the same dimension
+     * are stored next to each other, ordered like their parents, and are aligned to cache lines. This keeps
+     * the pages visited by queries close to each other. Shared pages remain shared.
+     */
+    void layout() {
+        
+        // Allocate pages, dimension by dimension
+        JHPLBuffer other = buffer.newInstance();
+        int[] copies = new int[buffer.size()];
+        int[] queue = new int[] { 0 };
+        int[] bounds = new int[dimensions + 1];
+        int[][] slots = slots();
+        int size = 1;
+        for (int dimension = 0, index = 0; dimension < dimensions; dimension++) {
+            bounds[dimension] = index;
+            int[] content = slots[dimension];
+            for (int end = size; index < end; index++) {
+                int page = queue[index];
+                copies[page] = allocate(other, dimension, read(buffer, page, dimension, content), true);
+                for (int i = 0; dimension < dimensions - 1 && i < content.length; i++) {
+                    int mem = content[i];
+                    if (mem != JHPLBuffer.FLAG_NOT_AVAILABLE && mem != JHPLBuffer.FLAG_AVAILABLE && copies[mem] == 0) {
+                        if (size == queue.length) {
+                            queue = Arrays.copyOf(queue, size * 2);
+                        }
+                        copies[mem] = JHPLBuffer.FLAG_AVAILABLE;
+                        queue[size++] = mem;
+                    }
+                }
+            }
+        }
+        bounds[dimensions] = size;
+        
+        // Write pages with translated pointers
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            int[] content = slots[dimension];
+            for (int index = bounds[dimension]; index < bounds[dimension + 1]; index++) {
+                int page = queue[index];
+                read(buffer, page, dimension, content);
+                for (int i = 0; dimension < dimensions - 1 && i < content.length; i++) {
+                    int mem = content[i];
+                    if (mem != JHPLBuffer.FLAG_NOT_AVAILABLE && mem != JHPLBuffer.FLAG_AVAILABLE) {
+                        content[i] = copies[mem];
+                    }
+                }
+                write(buffer, page, other, copies[page], dimension, content);
+            }
+        }
+        this.buffer.replace(other);
+        this.used = other.used();
+    }
+
     /**
      * Returns an iterator over all elements in the trie. Note: hasNext() is not implemented. Simply iterate until
      * <code>null</code> is returned.
@@ -262,9 +970,9 @@ abstract class JHPLTrie {
         
         // Initialize
         final int[] element = new int[this.dimensions];
+        final int[] result = new int[this.width];
         final IntegerStack offsets = new IntegerStack(this.dimensions);
         final IntegerStack pointers = new IntegerStack(this.dimensions);
-        final int offset = pruning ? 1 : 0;
         offsets.push(0);
         pointers.push(0);
         element[0] = 0;
@@ -289,22 +997,26 @@ abstract class JHPLTrie {
                         }
                     }
                     
-                    // Check and increment
-                    int mem = buffer.memory[pointers.peek() + offsets.peek() + offset];
-                    offsets.inc();
-                
-                    // If available
-                    if (mem != JHPLBuffer.FLAG_NOT_AVAILABLE) {
-                        
-                        element[offsets.size() - 1] = offsets.peek() - 1;
-                        if (offsets.size() < dimensions) {
-                            // Inner node
-                            offsets.push(0);
-                            pointers.push(mem);
-                        } else {
-                            // Leaf node
-                            return element;
-                        }
+                    // Find the next available value. Pages of full subtrees are not materialized.
+                    int pointer = pointers.peek();
+                    int dimension = offsets.size() - 1;
+                    int value = ceiling(pointer, dimension, offsets.pop());
+                    if (value == heights[dimension]) {
+                        offsets.push(value);
+                        continue;
+                    }
+                    offsets.push(value + 1);
+                    int mem = get(pointer, dimension, value);
+
+                    // Available
+                    element[dimension] = value;
+                    if (offsets.size() < dimensions) {
+                        // Inner node
+                        offsets.push(0);
+                        pointers.push(mem);
+                    } else {
+                        // Leaf node
+                        return toLattice(element, result);
                     }
                 }
             }
@@ -322,10 +1034,10 @@ abstract class JHPLTrie {
         
         // Initialize
         final int[] element = new int[this.dimensions];
+        final int[] result = new int[this.width];
         final IntegerStack offsets = new IntegerStack(this.dimensions);
         final IntegerStack pointers = new IntegerStack(this.dimensions);
         final int[] mins = new int[this.dimensions];
-        final int offset = pruning ? 1 : 0;
         offsets.push(0);
         pointers.push(0);
         element[0] = 0;
@@ -364,29 +1076,37 @@ abstract class JHPLTrie {
                         }
                     }
                     
-                    // Check and increment
-                    int mem = buffer.memory[pointers.peek() + offsets.peek() + offset];
-                    offsets.inc();
+                    // Find the next available value. Pages of full subtrees are not materialized.
+                    int pointer = pointers.peek();
+                    int dimension = offsets.size() - 1;
+                    int value = ceiling(pointer, dimension, offsets.pop());
+                    if (value == heights[dimension]) {
+                        offsets.push(value);
+                        continue;
+                    }
+                    offsets.push(value + 1);
+                    int mem = get(pointer, dimension, value);
                     
                     // Available
-                    if (mem != JHPLBuffer.FLAG_NOT_AVAILABLE) {
-                        int val = offsets.peek() - 1;
-                        int idx = offsets.size() - 1;
-                        current = current - element[idx] + val;
-                        element[idx] = val;
+                    current = current - element[dimension] + value;
+                    element[dimension] = value;
 
-                        // Inner node
-                        if (offsets.size() < dimensions) {
-                            
-                            // Initialize with minimal level
-                            int min = mins[offsets.size()];
-                            offsets.push(min);
-                            pointers.push(mem + min);
-                            
-                        // Leaf node on the requested level
-                        } else if (current == level) {
-                            return element; 
+                    // Inner node
+                    if (offsets.size() < dimensions) {
+                        
+                        // Skip subtrees without elements on the requested level
+                        if (isPruned(mem, current, level)) {
+                            continue;
                         }
+                        
+                        // Initialize with minimal level
+                        int min = mins[offsets.size()];
+                        offsets.push(min);
+                        pointers.push(mem);
+                        
+                    // Leaf node on the requested level
+                    } else if (current == level) {
+                        return toLattice(element, result); 
                     }
                 }
             }
@@ -400,13 +1120,13 @@ abstract class JHPLTrie {
      * <code>null</code> is returned.
      * @return
      */
-    LongIterator iteratorLong(final long[] multiplier) {
+    LongIterator iteratorLong(long[] multiplier) {
 
         // Initialize
+        final long[] multipliers = toTrie(multiplier);
         final LongStack identifiers = new LongStack(this.dimensions);
         final IntegerStack offsets = new IntegerStack(this.dimensions);
         final IntegerStack pointers = new IntegerStack(this.dimensions);
-        final int offset = pruning ? 1 : 0;
         offsets.push(0);
         pointers.push(0);
         identifiers.push(0L);
@@ -433,31 +1153,144 @@ abstract class JHPLTrie {
                         }
                     }
                     
-                    // Check and increment
-                    int mem = buffer.memory[pointers.peek() + offsets.peek() + offset];
-                    offsets.inc();
+                    // Find the next available value. Pages of full subtrees are not materialized.
+                    int pointer = pointers.peek();
+                    int dimension = offsets.size() - 1;
+                    int value = ceiling(pointer, dimension, offsets.pop());
+                    if (value == heights[dimension]) {
+                        offsets.push(value);
+                        continue;
+                    }
+                    offsets.push(value + 1);
+                    int mem = get(pointer, dimension, value);
+
+                    // Available
+                    long element = identifiers.peek() + ((long) value * multipliers[dimension]); 
+                    if (offsets.size() < dimensions) {
+                        // Inner node
+                        offsets.push(0);
+                        pointers.push(mem);
+                        identifiers.push(element);
+                    } else {
+                        // Leaf node
+                        return element;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns an iterator over all elements on the given level stored in the trie. Note: hasNext() is not implemented. 
+     * Simply iterate until <code>-1</code> is returned.
+     * @param multiplier
+     * @param level
+     * @return
+     */
+    LongIterator iteratorLong(long[] multiplier, final int level) {
+
+        // Initialize
+        final long[] multipliers = toTrie(multiplier);
+        final int[] element = new int[this.dimensions];
+        final LongStack identifiers = new LongStack(this.dimensions);
+        final IntegerStack offsets = new IntegerStack(this.dimensions);
+        final IntegerStack pointers = new IntegerStack(this.dimensions);
+        final int[] mins = new int[this.dimensions];
+        
+        // Determine minimal indices
+        for (int i = 0; i < mins.length; i++) {
+            int diff = levels - heights[i];
+            mins[i] = level - diff;
+            mins[i] = mins[i] < 0 ? 0 : mins[i];
+        }
+        offsets.push(mins[0]);
+        pointers.push(0);
+        identifiers.push(0L);
+        
+        // Return
+        return new LongIterator() {
+            
+            /** Current level*/
+            int current = 0;
+            
+            @Override public boolean hasNext() { throw new UnsupportedOperationException(); }
+
+            @Override
+            public long next() {
                 
-                    // If available
-                    if (mem != JHPLBuffer.FLAG_NOT_AVAILABLE) {
-                        
-                        long element = identifiers.peek() + ((long) (offsets.peek() - 1) * multiplier[offsets.size() - 1]); 
+                // Iteratively traverse the trie
+                while (true) {
+                    
+                    // (1) End of node, or  
+                    // (2) already on a higher level as requested
+                    while (offsets.peek() >= heights[offsets.size() - 1]  || current > level) {
+                        int idx = offsets.size() - 1;
+                        current -= element[idx];
+                        element[idx] = 0;
+                        offsets.pop();
+                        pointers.pop();
+                        identifiers.pop();
+                        if (offsets.empty()) {
+                            return -1;
+                        }
+                    }
+                    
+                    // Find the next available value. Pages of full subtrees are not materialized.
+                    int pointer = pointers.peek();
+                    int dimension = offsets.size() - 1;
+                    int value = ceiling(pointer, dimension, offsets.pop());
+                    if (value == heights[dimension]) {
+                        offsets.push(value);
+                        continue;
+                    }
+                    offsets.push(value + 1);
+                    int mem = get(pointer, dimension, value);
+                    
+                    // Available
+                    current = current - element[dimension] + value;
+                    element[dimension] = value;
+                    long identifier = identifiers.peek() + (long) value * multipliers[dimension];
+
+                    // Inner node
+                    if (offsets.size() < dimensions) {
                         
-                        if (offsets.size() < dimensions) {
-                            // Inner node
-                            offsets.push(0);
-                            pointers.push(mem);
-                            identifiers.push(element);
-                        } else {
-                            // Leaf node
-                            return element;
+                        // Skip subtrees without elements on the requested level
+                        if (isPruned(mem, current, level)) {
+                            continue;
                         }
+                        
+                        // Initialize with minimal level
+                        offsets.push(mins[offsets.size()]);
+                        pointers.push(mem);
+                        identifiers.push(identifier);
+                        
+                    // Leaf node on the requested level
+                    } else if (current == level) {
+                        return identifier; 
                     }
                 }
             }
         };
     }
 
+    /**
+     * Returns a new frontier for this trie, or <code>null</code>, if the trie does not maintain a frontier
+     * @return
+     */
+    abstract JHPLFrontier newFrontier();
+
     abstract JHPLTrie newInstance();
+
+    /**
+     * Returns the size of the given page
+     * @param page
+     * @param dimension
+     * @return
+     */
+    int pageSize(int page, int dimension) {
+        return pageSize(buffer.chunk(page), buffer.offset(page), dimension);
+    }
+
     
     /**
      * Puts an element into this trie
@@ -468,11 +1301,220 @@ abstract class JHPLTrie {
     }
     
     /**
-     * Puts an element into this trie
+     * Puts an element into this trie. Implementations must convert the element with toTrie().
      * @param element
      */
     abstract void put(int[] element, int level);
 
+    /**
+     * Removes the given value from the given page
+     * @param page
+     * @param dimension
+     * @param value
+     */
+    void remove(int page, int dimension, int value) {
+        int[] memory = buffer.chunk(page);
+        int offset = buffer.offset(page);
+        int start = offset + first[dimension];
+        if (flags[dimension]) {
+            memory[start + (value >>> 5)] &= ~(1 << value);
+            return;
+        }
+        if (!isSparse(memory, offset, dimension)) {
+            if (counting && memory[start + value] == JHPLBuffer.FLAG_AVAILABLE) {
+                memory[start + heights[dimension]]--;
+            }
+            memory[start + value] = JHPLBuffer.FLAG_NOT_AVAILABLE;
+            return;
+        }
+        int word = start + (value >>> 5);
+        if ((memory[word] & (1 << value)) != 0) {
+            int pointers = start + words[dimension];
+            int index = rank(memory, start, dimension, value);
+            int count = rank(memory, start, dimension, heights[dimension]);
+            System.arraycopy(memory, pointers + index + 1, memory, pointers + index, count - index - 1);
+            memory[pointers + count - 1] = JHPLBuffer.FLAG_NOT_AVAILABLE;
+            memory[word] &= ~(1 << value);
+        }
+    }
+
+    /**
+     * Stores the given slot for the given value in the given page. Sparse pages that are full are moved, 
+     * in which case the pointer in the parent page must be updated. Returns the offset of the page.
+     * @param page
+     * @param dimension
+     * @param value
+     * @param slot
+     * @return
+     */
+    int set(int page, int dimension, int value, int slot) {
+        int[] memory = buffer.chunk(page);
+        int offset = buffer.offset(page);
+        int start = offset + first[dimension];
+        if (flags[dimension]) {
+            if (slot == JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                memory[start + (value >>> 5)] &= ~(1 << value);
+            } else {
+                memory[start + (value >>> 5)] |= 1 << value;
+            }
+            return page;
+        }
+        if (!isSparse(memory, offset, dimension)) {
+            if (counting) {
+                memory[start + heights[dimension]] += (slot == JHPLBuffer.FLAG_AVAILABLE ? 1 : 0) - 
+                                                      (memory[start + value] == JHPLBuffer.FLAG_AVAILABLE ? 1 : 0);
+            }
+            memory[start + value] = slot;
+            return page;
+        }
+        int pointers = start + words[dimension];
+        int index = rank(memory, start, dimension, value);
+        if ((memory[start + (value >>> 5)] & (1 << value)) != 0) {
+            memory[pointers + index] = slot;
+            return page;
+        }
+        int count = rank(memory, start, dimension, heights[dimension]);
+        if (count == memory[start - 1]) {
+            page = grow(page, dimension, count);
+            return set(page, dimension, value, slot);
+        }
+        System.arraycopy(memory, pointers + index, memory, pointers + index + 1, count - index);
+        memory[pointers + index] = slot;
+        memory[start + (value >>> 5)] |= 1 << value;
+        return page;
+    }
+
+    /**
+     * Stores the given slot for the value of the given element in the given page. If the page is moved,
+     * the pointer in the parent page is updated. Returns the offset of the page.
+     * @param parent
+     * @param page
+     * @param dimension
+     * @param element
+     * @param slot
+     * @return
+     */
+    int set(int parent, int page, int dimension, int[] element, int slot) {
+        int pointer = set(page, dimension, element[dimension], slot);
+        if (pointer != page) {
+            set(parent, dimension - 1, element[dimension - 1], pointer);
+        }
+        return pointer;
+    }
+
+    /**
+     * Updates the summaries of the given page with the given element
+     * @param offset
+     * @param dimension
+     * @param element
+     * @param remaining level sum of the suffix of the element starting at the dimension
+     */
+    void summarize(int offset, int dimension, int[] element, int remaining) {
+        boolean up = bound == Integer.MAX_VALUE;
+        int[] memory = buffer.chunk(offset);
+        int base = buffer.offset(offset);
+        memory[base] = up ? Math.min(remaining, memory[base]) : Math.max(remaining, memory[base]);
+        int cell = trailer(memory, base, dimension);
+        for (int i = dimension + 1; i < dimensions; i++, cell++) {
+            memory[cell] = up ? Math.min(element[i], memory[cell]) : Math.max(element[i], memory[cell]);
+        }
+    }
+
+    /**
+     * Releases the capacity of the buffer that is not used
+     */
+    void trim() {
+        buffer.trim();
+    }
+
+    /**
+     * Expands all shared pages. Must be called before the trie is modified.
+     */
+    void unshare() {
+        if (shared) {
+            compactify();
+        }
+    }
+
+    /**
+     * Converts the given element from the order of the trie into the order of the lattice
+     * @param element
+     * @param result with a length that matches the number of dimensions of the lattice
+     * @return
+     */
+    int[] toLattice(int[] element, int[] result) {
+        if (identity) {
+            return element;
+        }
+        for (int i = 0; i < dimensions; i++) {
+            result[order[i]] = element[i];
+        }
+        return result;
+    }
+
+    /**
+     * Converts the given element from the order of the lattice into the order of the trie. The result is
+     * overwritten by the next conversion.
+     * @param element
+     * @return
+     */
+    int[] toTrie(int[] element) {
+        return toTrie(element, converted);
+    }
+
+    /**
+     * Converts the given element from the order of the lattice into the order of the trie
+     * @param element
+     * @param result with a length that matches the number of dimensions of the trie
+     * @return
+     */
+    int[] toTrie(int[] element, int[] result) {
+        if (identity) {
+            return element;
+        }
+        for (int i = 0; i < dimensions; i++) {
+            result[i] = element[order[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Converts the given multipliers from the order of the lattice into the order of the trie
+     * @param multiplier
+     * @return
+     */
+    long[] toTrie(long[] multiplier) {
+        if (identity) {
+            return multiplier;
+        }
+        long[] result = new long[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            result[i] = multiplier[order[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the position of the trailer of the page at the given position in the given array
+     * @param memory
+     * @param page
+     * @param dimension
+     * @return
+     */
+    int trailer(int[] memory, int page, int dimension) {
+        return page + first[dimension] + length(memory, page, dimension);
+    }
+
+    /**
+     * Returns the offset of the trailer of the given page, which holds the summaries of the following dimensions
+     * @param page
+     * @param dimension
+     * @return
+     */
+    int trailer(int page, int dimension) {
+        return trailer(buffer, page, dimension);
+    }
+
     /**
      * To string method
      * @param prefix
@@ -480,7 +1522,7 @@ abstract class JHPLTrie {
      */
     String toString(String prefix1, String prefix2) {
         
-        int allocated = buffer.memory.length * 4;
+        long allocated = buffer.capacity() * 4;
         int used = this.used * 4;
         double relative = (double)used / (double)allocated * 100d;
         DecimalFormat format = new DecimalFormat("##0.00000");
@@ -492,7 +1534,7 @@ abstract class JHPLTrie {
         builder.append(prefix2).append("|   +-- Used: ").append(used).append(" [bytes]\n");
         builder.append(prefix2).append("|   +-- Relative: ").append(format.format(relative)).append(" [%]\n");
         builder.append(prefix2).append("+-- Buffer\n");
-        builder.append(prefix2).append("|   +-- ").append(Arrays.toString(buffer.memory)).append("\n");
+        builder.append(prefix2).append("|   +-- ").append(buffer).append("\n");
         builder.append(prefix2).append("+-- Tree\n");
         builder.append(toString(prefix2 + "    ", false, 0, 0));
         builder.append(prefix2).append("    +-- [EOT]\n");
@@ -12,45 +12,59 @@
 package de.linearbits.jhpl;
 
 
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+
 /**
- * This class implements a simple trie for integers that is materialized in a backing integer array
+ * This class implements a simple trie for integers that is materialized in a backing integer array.
+ * Subtrees in which all elements are available are not materialized. Instead, the pointer to the
+ * according page is replaced by the flag JHPLBuffer.FLAG_AVAILABLE.
  * @author Fabian Prasser
  */
 class JHPLTrieEQ extends JHPLTrie{
 
+    /** Offsets of the pages on the path to the most recently stored element */
+    private final int[] path;
+
     /**
      * Constructs a new trie
      * @param lattice
      */
     JHPLTrieEQ(Lattice<?, ?> lattice) {
-        super(lattice, false, 0);
+        super(lattice, false, 0, true);
+        this.path = new int[dimensions];
     }
 
     @Override
     boolean clear(int[] element, int dimension, int offset) {
 
-        // Init
-        int elementOffset = offset + element[dimension];
-
         // Terminate
         if (dimension == dimensions - 1) {
-            buffer.memory[elementOffset] = JHPLBuffer.FLAG_NOT_AVAILABLE;
+            remove(offset, dimension, element[dimension]);
             // Recursion
         } else {
-            int pointer = buffer.memory[elementOffset];
+            int pointer = get(offset, dimension, element[dimension]);
+            
+            // Split full subtree into a dense page
+            if (pointer == JHPLBuffer.FLAG_AVAILABLE) {
+                int space = heights[dimension + 1];
+                pointer = allocate(buffer, dimension + 1, space);
+                used += pageSize(pointer, dimension + 1);
+                for (int i = 0; i < space; i++) {
+                    set(pointer, dimension + 1, i, JHPLBuffer.FLAG_AVAILABLE);
+                }
+                set(offset, dimension, element[dimension], pointer);
+            }
+            
             if (pointer != JHPLBuffer.FLAG_NOT_AVAILABLE) {
                 if (!clear(element, dimension + 1, pointer)) {
-                    buffer.memory[elementOffset] = JHPLBuffer.FLAG_NOT_AVAILABLE;
-                    used -= heights[dimension + 1];
+                    remove(offset, dimension, element[dimension]);
+                    free(pointer, dimension + 1);
                 }
             }
         }
 
         // Return
-        for (int i = offset; i < offset + heights[dimension]; i++) {
-            if (buffer.memory[i] != JHPLBuffer.FLAG_NOT_AVAILABLE) { return true; }
-        }
-        return false;
+        return ceiling(offset, dimension, 0) < heights[dimension];
     }
 
     @Override
@@ -62,16 +76,17 @@ class JHPLTrieEQ extends JHPLTrie{
         // Foreach
         for (dimension = 0; dimension < element.length; dimension++) {
     
-            // Increment
-            offset += element[dimension];
-    
             // Find
-            int pointer = buffer.memory[offset];
+            int pointer = get(offset, dimension, element[dimension]);
     
             // Terminate
             if (pointer == JHPLBuffer.FLAG_NOT_AVAILABLE) {
                 return false;
                 
+            // Full subtree
+            } else if (pointer == JHPLBuffer.FLAG_AVAILABLE) {
+                return true;
+                
             // Next
             } else {
                 offset = pointer;
@@ -82,26 +97,204 @@ class JHPLTrieEQ extends JHPLTrie{
         return true;
     }
 
+    /**
+     * Returns whether all, none or some of the elements that start with the given prefix are contained in this trie
+     * @param element
+     * @param length of the prefix
+     * @return JHPLQuery.TRUE, JHPLQuery.FALSE or JHPLQuery.UNKNOWN
+     */
+    int containsPrefix(int[] element, int length) {
+        
+        // Foreach
+        int offset = 0;
+        for (int dimension = 0; dimension < length; dimension++) {
+            int pointer = get(offset, dimension, element[dimension]);
+            if (pointer == JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                return JHPLQuery.FALSE;
+            } else if (pointer == JHPLBuffer.FLAG_AVAILABLE) {
+                return JHPLQuery.TRUE;
+            } else {
+                offset = pointer;
+            }
+        }
+        
+        // Return
+        return JHPLQuery.UNKNOWN;
+    }
+
+    /**
+     * Materializes all elements. As all subtrees are full, this only requires to mark all slots
+     * of the root page.
+     */
+    void materialize() {
+        int[] memory = new int[heights[0] + 1];
+        for (int i = 0; i < heights[0]; i++) {
+            memory[i] = JHPLBuffer.FLAG_AVAILABLE;
+        }
+        memory[heights[0]] = heights[0];
+        this.buffer.replace(memory);
+        this.used = memory.length;
+        this.shared = false;
+    }
+
+    @Override
+    JHPLFrontier newFrontier() {
+        return null;
+    }
+
     @Override
     JHPLTrie newInstance() {
         return new JHPLTrieEQ(this.lattice);
     }
 
+    /**
+     * Stores all elements with the given identifiers. Identifiers should be sorted in ascending order, 
+     * as the path to the previous element is reused.
+     * @param identifiers
+     * @param multiplier
+     */
+    void put(LongIterator identifiers, long[] multiplier) {
+
+        // Init
+        this.unshare();
+        int[] element = new int[dimensions];
+        long numNodes = lattice.numNodes();
+        int valid = 1;
+
+        // Foreach
+        while (identifiers.hasNext()) {
+            
+            // Convert and determine the first dimension that differs from the previous element
+            long identifier = identifiers.next();
+            if (identifier < 0 || identifier >= numNodes) {
+                throw new IllegalArgumentException("Invalid node id");
+            }
+            int start = valid - 1;
+            for (int dimension = 0; dimension < dimensions; dimension++) {
+                int value = (int) (identifier / multiplier[order[dimension]] % heights[dimension]);
+                if (value != element[dimension] && dimension < start) {
+                    start = dimension;
+                }
+                element[dimension] = value;
+            }
+
+            // Store, starting at the cached path
+            valid = putFrom(element, start);
+        }
+        
+        // Compaction
+        double utilization = (double)used / (double)buffer.capacity();
+        if (utilization < COMPACTION_THRESHOLD) {
+            compactify();
+        }
+    }
+
+    /**
+     * Stores all elements contained in the given trie, which must have the same structure.
+     * Both tries are walked together and only pages that are not contained in this trie are copied.
+     * @param other
+     */
+    void put(JHPLTrieEQ other) {
+        unshare();
+        put(other, 0, 0, 0);
+        
+        // Compaction
+        double utilization = (double)used / (double)buffer.capacity();
+        if (utilization < COMPACTION_THRESHOLD) {
+            compactify();
+        }
+    }
+
     @Override
     void put(int[] element, int level) {
+        unshare();
+        putFrom(toTrie(element), 0);
         
-        int offset = 0;
-        for (int dimension = 0; dimension < dimensions - 1; dimension++) {
-            offset += element[dimension];
-            if (buffer.memory[offset] == JHPLBuffer.FLAG_NOT_AVAILABLE){
-                int space = heights[dimension + 1];
-                int pointer = buffer.allocate(space);
-                used += space;
-                buffer.memory[offset] = pointer;
+        // Compaction
+        double utilization = (double)used / (double)buffer.capacity();
+        if (utilization < COMPACTION_THRESHOLD) {
+            compactify();
+        }
+    }
+    
+    /**
+     * Stores all elements from the given page of the other trie in the given page of this trie. Returns
+     * the offset of the page, which is moved if it is sparse and full.
+     * @param other
+     * @param offset
+     * @param source
+     * @param dimension
+     * @return
+     */
+    private int put(JHPLTrieEQ other, int offset, int source, int dimension) {
+        
+        // Foreach
+        for (int i = other.ceiling(source, dimension, 0); i < heights[dimension]; i = other.ceiling(source, dimension, i + 1)) {
+            int mem = other.get(source, dimension, i);
+            int pointer = get(offset, dimension, i);
+            if (pointer != JHPLBuffer.FLAG_AVAILABLE) {
+                
+                // Available or full subtree
+                if (dimension == dimensions - 1 || mem == JHPLBuffer.FLAG_AVAILABLE) {
+                    if (pointer != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                        free(pointer, dimension + 1);
+                    }
+                    offset = set(offset, dimension, i, JHPLBuffer.FLAG_AVAILABLE);
+                    
+                // Copy subtree
+                } else if (pointer == JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                    pointer = copy(other, mem, dimension + 1);
+                    offset = set(offset, dimension, i, pointer);
+                    
+                // Recursion and collapse
+                } else {
+                    int page = put(other, pointer, mem, dimension + 1);
+                    if (isFull(page, dimension + 1)) {
+                        set(offset, dimension, i, JHPLBuffer.FLAG_AVAILABLE);
+                        free(page, dimension + 1);
+                    } else if (page != pointer) {
+                        set(offset, dimension, i, page);
+                    }
+                }
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Stores the given element, starting at the page on the path to the previous element in the given dimension.
+     * Pages that become full are replaced by a flag in their parent page.
+     * @param element
+     * @param start
+     * @return the number of dimensions for which the path is still valid
+     */
+    private int putFrom(int[] element, int start) {
+        
+        // Store
+        int offset = path[start];
+        for (int dimension = start; dimension < dimensions - 1; dimension++) {
+            int pointer = get(offset, dimension, element[dimension]);
+            if (pointer == JHPLBuffer.FLAG_AVAILABLE) {
+                return dimension + 1; // Already contained in a full subtree
+            } else if (pointer == JHPLBuffer.FLAG_NOT_AVAILABLE){
+                pointer = allocate(dimension + 1);
+                path[dimension] = set(dimension == 0 ? 0 : path[dimension - 1], offset, dimension, element, pointer);
             }    
-            offset = buffer.memory[offset];
+            offset = pointer;
+            path[dimension + 1] = offset;
+        }
+        int last = dimensions - 1;
+        path[last] = set(last == 0 ? 0 : path[last - 1], offset, last, element, JHPLBuffer.FLAG_AVAILABLE);
+        
+        // Collapse full pages
+        for (int dimension = dimensions - 1; dimension > 0; dimension--) {
+            int page = path[dimension];
+            if (!isFull(page, dimension)) {
+                return dimension + 1;
+            }
+            set(path[dimension - 1], dimension - 1, element[dimension - 1], JHPLBuffer.FLAG_AVAILABLE);
+            free(page, dimension);
         }
-        offset += element[dimensions - 1];
-        buffer.memory[offset] = JHPLBuffer.FLAG_AVAILABLE;
+        return 1;
     }
-}
\ No newline at end of file
+}
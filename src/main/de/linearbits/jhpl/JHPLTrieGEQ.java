@@ -11,6 +11,7 @@
  */
 package de.linearbits.jhpl;
 
+import java.util.Arrays;
 
 /**
  * This class implements a simple trie for integers that is materialized in a backing integer array
@@ -18,12 +19,20 @@ package de.linearbits.jhpl;
  */
 class JHPLTrieGEQ extends JHPLTrie{
 
+    /** Componentwise maximum of all elements whose first value is greater than or equal to the index, conservative after clearing */
+    private final int[][] maximum;
+
     /**
      * Constructs a new trie
      * @param lattice
      */
     JHPLTrieGEQ(Lattice<?, ?> lattice) {
-        super(lattice, true, Integer.MIN_VALUE);
+        super(lattice, true, Integer.MIN_VALUE, false);
+        this.frontier = newFrontier();
+        this.maximum = new int[heights[0]][dimensions];
+        for (int[] bounds : this.maximum) {
+            Arrays.fill(bounds, Integer.MIN_VALUE);
+        }
     }
 
     /**
@@ -41,11 +50,8 @@ class JHPLTrieGEQ extends JHPLTrie{
         // Foreach
         for (int dimension = 0; dimension < element.length; dimension++) {
     
-            // Increment
-            offset += element[dimension] + 1;
-    
             // Find
-            int pointer = buffer.memory[offset];
+            int pointer = get(offset, dimension, element[dimension]);
     
             // Terminate
             if (pointer == JHPLBuffer.FLAG_NOT_AVAILABLE) {
@@ -61,20 +67,55 @@ class JHPLTrieGEQ extends JHPLTrie{
         return true;
     }
     
-    boolean _contains(int[] element, int level, int dimension, int offset) {
+    /**
+     * Returns whether the given element may be less than or equal to an element in this trie, by checking it
+     * against the bounds of all elements that can be greater than or equal to it
+     * @param element
+     * @return
+     */
+    private boolean isCandidate(int[] element) {
+        int[] bounds = maximum[element[0]];
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            if (element[dimension] > bounds[dimension]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Queries the subtree at the given page for elements that are greater than or equal to the given element
+     * and on a higher level
+     * @param element
+     * @param level
+     * @param dimension
+     * @param offset
+     * @param prefix level of the prefix
+     * @return
+     */
+    private boolean _contains(int[] element, int level, int dimension, int offset, int prefix) {
         
         if (dimension == dimensions) {
             return true;
         } else {
 
             // Check level
-           if (dimension < dimensions - 1 && buffer.memory[offset] <= level) {
-               return false;
-           }
+            int[] memory = buffer.chunk(offset);
+            int base = buffer.offset(offset);
+            if (prefix + memory[base] <= level) {
+                return false;
+            }
+            
+            // Check maximal values of the following dimensions
+            int cell = trailer(memory, base, dimension);
+            for (int i = dimension + 1; i < dimensions; i++, cell++) {
+                if (memory[cell] < element[i]) {
+                    return false;
+                }
+            }
            
-            for (int i = element[dimension] + 1; i <= heights[dimension]; i++) {
-                int pointer = buffer.memory[offset + i];
-                if (pointer != JHPLBuffer.FLAG_NOT_AVAILABLE && _contains(element, level, dimension + 1, pointer)) { 
+            for (int i = ceiling(offset, dimension, element[dimension]); i < heights[dimension]; i = ceiling(offset, dimension, i + 1)) {
+                if (_contains(element, level, dimension + 1, get(offset, dimension, i), prefix + i)) { 
                     return true; 
                 }
             }
@@ -85,45 +126,55 @@ class JHPLTrieGEQ extends JHPLTrie{
     @Override
     boolean clear(int[] element, int dimension, int offset) {
 
-        // Init
-        int elementOffset = offset + element[dimension] + 1;
-
         // Terminate
         if (dimension == dimensions - 1) {
-            for (int i = 0; i <= element[dimension]; i++) {
-                buffer.memory[elementOffset - i] = JHPLBuffer.FLAG_NOT_AVAILABLE;
+            for (int i = floor(offset, dimension, element[dimension]); i >= 0; i = floor(offset, dimension, i - 1)) {
+                remove(offset, dimension, i);
             }
 
             // Recursion
         } else {
-            for (int i = 0; i <= element[dimension]; i++) {
-                int pointer = buffer.memory[elementOffset - i];
-                if (pointer != JHPLBuffer.FLAG_NOT_AVAILABLE) {
-                    if (!clear(element, dimension + 1, pointer)) {
-                        buffer.memory[elementOffset - i] = JHPLBuffer.FLAG_NOT_AVAILABLE;
-                        used -= heights[dimension + 1] + 1;
-                    }
+            for (int i = floor(offset, dimension, element[dimension]); i >= 0; i = floor(offset, dimension, i - 1)) {
+                int pointer = get(offset, dimension, i);
+                if (!clear(element, dimension + 1, pointer)) {
+                    remove(offset, dimension, i);
+                    free(pointer, dimension + 1);
                 }
             }
         }
 
         // Return
-        for (int i = offset + 1; i < offset + heights[dimension] + 1; i++) {
-            if (buffer.memory[i] != JHPLBuffer.FLAG_NOT_AVAILABLE) { return true; }
-        }
-        return false;
+        return ceiling(offset, dimension, 0) < heights[dimension];
     }
 
     @Override
     boolean contains(int[] element, int level, int dimension, int offset) {
         
+        // Reject elements outside of the bounds without touching the buffer
+        if (dimension == 0 && !isCandidate(element)) {
+            return false;
+        }
+        
         // We need to check this, to allow for pruning with max(level)>=level instead of max(level)>level only.
         if (level != bound && containsEQ(element)) {
             return true;
         }
         
         // Now, check
-        return _contains(element, level, dimension, offset);
+        return _contains(element, level, dimension, offset, 0);
+    }
+
+    @Override
+    void copy(JHPLTrie trie) {
+        super.copy(trie);
+        for (int value = 0; value < heights[0]; value++) {
+            System.arraycopy(((JHPLTrieGEQ)trie).maximum[value], 0, maximum[value], 0, dimensions);
+        }
+    }
+
+    @Override
+    JHPLFrontier newFrontier() {
+        return JHPLFrontier.create(heights, false);
     }
 
     @Override
@@ -134,23 +185,46 @@ class JHPLTrieGEQ extends JHPLTrie{
     @Override
     void put(int[] element, int level) {
         
-        int base = 0;
+        unshare();
+        element = toTrie(element);
+        if (frontier != null && !frontier.put(element)) {
+            frontier = null;
+        }
+        
+        // Bounds
+        for (int value = element[0]; value >= 0; value--) {
+            int[] bounds = maximum[value];
+            boolean modified = false;
+            for (int dimension = 0; dimension < dimensions; dimension++) {
+                int limit = Math.max(bounds[dimension], element[dimension]);
+                modified |= limit != bounds[dimension];
+                bounds[dimension] = limit;
+            }
+            // Bounds for the remaining values already cover the element
+            if (!modified) {
+                break;
+            }
+        }
+        
+        // Trie
+        int remaining = 0;
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            remaining += element[dimension];
+        }
+        int parent = 0;
         int offset = 0;
         for (int dimension = 0; dimension < dimensions - 1; dimension++) {
-            base = offset;
-            offset += element[dimension] + 1;
-            if (buffer.memory[offset] == JHPLBuffer.FLAG_NOT_AVAILABLE){
-                int space = heights[dimension + 1] + 1;
-                int pointer = buffer.allocate(space);
-                used += space;
-                buffer.memory[offset] = pointer;
-                buffer.memory[pointer] = bound + 1;
+            summarize(offset, dimension, element, remaining);
+            remaining -= element[dimension];
+            int pointer = get(offset, dimension, element[dimension]);
+            if (pointer == JHPLBuffer.FLAG_NOT_AVAILABLE){
+                pointer = allocate(dimension + 1);
+                offset = set(parent, offset, dimension, element, pointer);
             }    
-            buffer.memory[base] = Math.max(level, buffer.memory[base]);
-            offset = buffer.memory[offset];
+            parent = offset;
+            offset = pointer;
         }
-        // TODO: On the last page, we always leave the max-level at its initial value
-        offset += element[dimensions - 1] + 1;
-        buffer.memory[offset] = JHPLBuffer.FLAG_AVAILABLE;
+        summarize(offset, dimensions - 1, element, remaining);
+        set(parent, offset, dimensions - 1, element, JHPLBuffer.FLAG_AVAILABLE);
     }
 }
\ No newline at end of file
@@ -68,6 +68,25 @@ public class JHPLUnsafe {
         return lattice.listAllNodesAsIdentifiers(level);
     }
     
+    /**
+     * Enumerates all nodes that qualify for the given query
+     * @param query
+     * @return
+     */
+    public Iterator<int[]> listNodes(JHPLQuery query) {
+        return lattice.query(query, -1);
+    }
+
+    /**
+     * Enumerates all nodes on the given level that qualify for the given query
+     * @param query
+     * @param level
+     * @return
+     */
+    public Iterator<int[]> listNodes(JHPLQuery query, int level) {
+        return lattice.query(query, level);
+    }
+    
     /**
      * Lists all nodes not stored in the lattice
      * @return
@@ -250,6 +269,25 @@ public class JHPLUnsafe {
         });
     }
 
+    /**
+     * Returns the number of nodes that qualify for the given query
+     * @param query
+     * @return
+     */
+    public long numNodes(JHPLQuery query) {
+        return query.count(lattice, -1);
+    }
+
+    /**
+     * Returns the number of nodes on the given level that qualify for the given query
+     * @param query
+     * @param level
+     * @return
+     */
+    public long numNodes(JHPLQuery query, int level) {
+        return query.count(lattice, level);
+    }
+
     /**
      * Materializes the whole lattice. The result of this method is similar to calling put() for 
      * each node returned by listAllNodes(). It is here for your convenience, only. 
@@ -257,4 +295,13 @@ public class JHPLUnsafe {
     public void materialize() {
         lattice.materialize();
     }
+
+    /**
+     * Materializes all nodes with the given identifiers. The result of this method is similar to calling put() 
+     * for each of the nodes. Identifiers should be sorted in ascending order, which allows to load them efficiently.
+     * @param identifiers
+     */
+    public void materialize(LongIterator identifiers) {
+        lattice.materialize(identifiers);
+    }
 }
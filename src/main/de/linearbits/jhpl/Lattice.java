@@ -12,12 +12,16 @@
 package de.linearbits.jhpl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
 
 import de.linearbits.jhpl.JHPLIterator.LongIterator;
+import de.linearbits.jhpl.JHPLIterator.TrieIterator;
 import de.linearbits.jhpl.JHPLIterator.WrappedIntArrayIterator;
 import de.linearbits.jhpl.JHPLIterator.WrappedPrimitiveLongIterator;
 import de.linearbits.jhpl.JHPLStack.IntegerStack;
@@ -42,7 +46,7 @@ public class Lattice<T, U> {
     /** Data */
     private final JHPLData<T, U>                            data;
     /** All materialized nodes */
-    private final JHPLTrie                                  master;
+    private final JHPLTrieEQ                                master;
     /** Nodes */
     private final JHPLNodes<T>                              nodes;
     /** Tries for properties */
@@ -59,6 +63,8 @@ public class Lattice<T, U> {
     private final long                                      numNodes;
     /** Track modifications */
     private boolean                                         modified = false;
+    /** Whether the lattice can no longer be modified */
+    private boolean                                         frozen   = false;
     /** Data */
     private final int[]                                     heights;
     /** Data */
@@ -132,6 +138,40 @@ public class Lattice<T, U> {
         this.multiplier = nodes.getMultiplier();
     }
         
+    /**
+     * Compacts the tries that store predictive properties by sharing structurally identical pages. This
+     * may considerably reduce the memory consumed by large frontiers. A trie will be expanded again when
+     * it is modified.
+     */
+    public void compactify() {
+        compactify(false);
+    }
+
+    /**
+     * Compacts the tries that store predictive properties, as described for compactify(). If <code>layout</code> 
+     * is true, pages are additionally stored in breadth-first order and aligned to cache lines. This reduces
+     * cache misses of queries on large frontiers at the cost of some memory. Frozen lattices are not changed.
+     * 
+     * @param layout
+     */
+    public void compactify(boolean layout) {
+        if (frozen) {
+            return;
+        }
+        for (JHPLTrie trie : this.propertiesUp.values()) {
+            trie.deduplicate();
+            if (layout) {
+                trie.layout();
+            }
+        }
+        for (JHPLTrie trie : this.propertiesDown.values()) {
+            trie.deduplicate();
+            if (layout) {
+                trie.layout();
+            }
+        }
+    }
+    
     /**
      * Returns whether this lattice stores any information about the given node.
      * 
@@ -141,6 +181,30 @@ public class Lattice<T, U> {
     public boolean contains(int[] node) {
         return master.contains(node);
     }
+
+    /**
+     * Freezes this lattice. All tries are compacted by sharing structurally identical pages and their buffers
+     * are trimmed to the memory actually used. Afterwards, all methods that would modify the lattice throw an 
+     * IllegalStateException. As queries on a frozen lattice do not write to shared state, a frozen lattice 
+     * may be queried by multiple threads concurrently, if it has been safely published to them.
+     */
+    public void freeze() {
+        if (frozen) {
+            return;
+        }
+        this.master.deduplicate();
+        this.master.trim();
+        for (JHPLTrie trie : this.propertiesUp.values()) {
+            trie.deduplicate();
+            trie.trim();
+        }
+        for (JHPLTrie trie : this.propertiesDown.values()) {
+            trie.deduplicate();
+            trie.trim();
+        }
+        this.modified = false;
+        this.frozen = true;
+    }
     
     /**
      * Returns a pretty accurate estimation of the memory consumed by this lattice
@@ -263,6 +327,54 @@ public class Lattice<T, U> {
         return hasProperty(node, nodes.getLevel(node), property);
     }
     
+    /**
+     * Stores the frontier of the given property, e.g. as returned by <code>listFrontier()</code>. If the 
+     * property has not been stored before, the nodes are loaded directly, without checking them against 
+     * each other. In this case, they must form an antichain, i.e. consist of minimal nodes for upwards-predictive 
+     * properties and of maximal nodes for downwards-predictive properties. Otherwise, this method is equivalent 
+     * to calling <code>putProperty()</code> for each node. Frontiers are only defined for properties that are 
+     * predictive in one direction.
+     * 
+     * @param property
+     * @param identifiers
+     */
+    public void importFrontier(PredictiveProperty property, LongIterator identifiers) {
+        
+        // Check
+        Map<PredictiveProperty, JHPLTrie> tries = getFrontiers(property);
+        this.setModified();
+        
+        // Prepare
+        JHPLTrie trie = tries.get(property);
+        int[] node = new int[this.numDimensions()];
+        
+        // Merge with existing frontier
+        if (trie != null) {
+            while (identifiers.hasNext()) {
+                putProperty(space.toIndex(node, identifiers.next()), property);
+            }
+            return;
+        }
+        
+        // Load
+        trie = property.getDirection() == Direction.UP ? new JHPLTrieLEQ(this) : new JHPLTrieGEQ(this);
+        tries.put(property, trie);
+        while (identifiers.hasNext()) {
+            space.toIndex(node, identifiers.next());
+            this.master.put(node);
+            trie.put(node, nodes.getLevel(node));
+        }
+    }
+
+    /**
+     * Returns whether this lattice has been frozen
+     * 
+     * @return
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
     /**
      * Enumerates all nodes on the given level regardless of whether or not they are stored in the lattice.
      * @return
@@ -279,6 +391,22 @@ public class Lattice<T, U> {
         }
     }
 
+    /**
+     * Enumerates the identifiers of the frontier of the given property in ascending order. For upwards-predictive 
+     * properties, these are the minimal nodes with the property. For downwards-predictive properties, these are the 
+     * maximal nodes with the property. All other nodes with the property are implied by the frontier.
+     * 
+     * @param property
+     * @return
+     */
+    public LongIterator listFrontier(PredictiveProperty property) {
+        JHPLTrie trie = getFrontiers(property).get(property);
+        if (trie == null) {
+            return new JHPLLongList().iterator();
+        }
+        return new WrappedPrimitiveLongIterator(this, trie.iteratorLong(this.multiplier));
+    }
+
     /** 
      * Enumerates all nodes stored in the lattice
      * @return
@@ -296,6 +424,27 @@ public class Lattice<T, U> {
         return new WrappedIntArrayIterator(this, this.master.iterator(level));
     }
 
+    /**
+     * Enumerates all nodes that qualify for the given query. The query must be bounded by the nodes stored
+     * in the lattice, i.e. it must only return stored nodes.
+     * @param query
+     * @return
+     */
+    public Iterator<int[]> listNodes(JHPLQuery query) {
+        return query(checkBounded(query), -1);
+    }
+
+    /**
+     * Enumerates all nodes on the given level that qualify for the given query. The query must be bounded by 
+     * the nodes stored in the lattice, i.e. it must only return stored nodes.
+     * @param query
+     * @param level
+     * @return
+     */
+    public Iterator<int[]> listNodes(JHPLQuery query, int level) {
+        return query(checkBounded(query), level);
+    }
+
     /** 
      * Enumerates all nodes stored in the lattice
      * @return
@@ -304,6 +453,72 @@ public class Lattice<T, U> {
         return new WrappedPrimitiveLongIterator(this, this.master.iteratorLong(this.nodes.getMultiplier()));
     }
 
+    /** 
+     * Enumerates all nodes stored on the given level
+     * @param level
+     * @return
+     */
+    public LongIterator listNodesAsIdentifiers(int level) {
+        return new WrappedPrimitiveLongIterator(this, this.master.iteratorLong(this.nodes.getMultiplier(), level));
+    }
+
+    /**
+     * Merges all information stored in the given lattice into this lattice. The lattices must have the same structure.
+     * If data has been associated with a node in both lattices, the data from the given lattice is stored.
+     * 
+     * @param other
+     */
+    public void mergeFrom(Lattice<T, U> other) {
+        mergeFrom(other, null);
+    }
+
+    /**
+     * Merges all information stored in the given lattice into this lattice. The lattices must have the same structure.
+     * The master tries are merged by walking both tries together. For predictive properties, the minimal
+     * (or maximal) nodes from the frontier of the other lattice are merged one by one. If data has been associated
+     * with a node in both lattices, the given policy determines the data that is stored.
+     * 
+     * @param other
+     * @param policy
+     */
+    public void mergeFrom(Lattice<T, U> other, JHPLConflictPolicy<U> policy) {
+        
+        // Check
+        if (other instanceof LatticeHighdimensional) {
+            throw new UnsupportedOperationException("Cannot merge high-dimensional lattices");
+        }
+        if (!Arrays.equals(this.heights, other.heights)) {
+            throw new IllegalArgumentException("Lattices must have the same structure");
+        }
+        if (other == this) {
+            return;
+        }
+        this.setModified();
+        
+        // Master and data
+        this.master.put(other.master);
+        this.data.merge(other.data, policy);
+        
+        // Predictive properties
+        mergeFrom(this.propertiesUp, other.propertiesUp, Direction.UP);
+        mergeFrom(this.propertiesDown, other.propertiesDown, Direction.DOWN);
+        
+        // Non-predictive properties
+        for (Entry<PredictiveProperty, JHPLMap<Boolean>> entry : other.propertiesNone.entrySet()) {
+            JHPLMap<Boolean> map = this.propertiesNone.get(entry.getKey());
+            if (map == null) {
+                map = new JHPLMap<Boolean>();
+                this.propertiesNone.put(entry.getKey(), map);
+            }
+            JHPLMap<Boolean> source = entry.getValue();
+            for (int i = 0; i < source.states.length; i++) {
+                if (source.states[i] == JHPLMap.ASSIGNED) {
+                    map.put(source.keys[i], source.get(source.keys[i]));
+                }
+            }
+        }
+    }
+
     /**
      * Returns a class for working with nodes
      * @return
@@ -335,6 +550,27 @@ public class Lattice<T, U> {
     public long numNodes(){
         return numNodes;
     }
+
+    /**
+     * Returns the number of nodes that qualify for the given query. The query must be bounded by the nodes 
+     * stored in the lattice, i.e. it must only return stored nodes.
+     * @param query
+     * @return
+     */
+    public long numNodes(JHPLQuery query) {
+        return checkBounded(query).count(this, -1);
+    }
+
+    /**
+     * Returns the number of nodes on the given level that qualify for the given query. The query must be bounded 
+     * by the nodes stored in the lattice, i.e. it must only return stored nodes.
+     * @param query
+     * @param level
+     * @return
+     */
+    public long numNodes(JHPLQuery query, int level) {
+        return checkBounded(query).count(this, level);
+    }
     
     /**
      * Associates the given node with the given data.
@@ -422,6 +658,25 @@ public class Lattice<T, U> {
         putProperty(node, nodes.getLevel(node), property);
     }
 
+    /**
+     * Draws k nodes on the given level which are not associated with the given property uniformly at random.
+     * Samples are drawn independently of each other, i.e. with replacement. If level is negative, nodes on all
+     * levels will be considered. Samples are computed by ranking nodes with the counts of the subtrees of the 
+     * property's tries, which means that the run-time is independent of the fraction of nodes that already
+     * have the property.
+     * @param property
+     * @param level
+     * @param k
+     * @param random
+     * @return
+     */
+    public Iterator<int[]> sampleWithoutProperty(PredictiveProperty property, int level, int k, Random random) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Number of samples must not be negative");
+        }
+        return JHPLQuery.all().andNot(JHPLQuery.property(property)).sample(this, level, k, random).iterator();
+    }
+
     /**
      * Returns a class for mapping between spaces
      * @return
@@ -460,6 +715,67 @@ public class Lattice<T, U> {
         return this.unsafe;
     }
 
+    /**
+     * Merges the tries for predictive properties
+     * @param tries
+     * @param others
+     * @param direction
+     */
+    private void mergeFrom(Map<PredictiveProperty, JHPLTrie> tries, Map<PredictiveProperty, JHPLTrie> others, Direction direction) {
+        
+        for (Entry<PredictiveProperty, JHPLTrie> entry : others.entrySet()) {
+            
+            // Copy
+            PredictiveProperty property = entry.getKey();
+            JHPLTrie trie = tries.get(property);
+            if (trie == null) {
+                trie = direction == Direction.UP ? new JHPLTrieLEQ(this) : new JHPLTrieGEQ(this);
+                trie.copy(entry.getValue());
+                tries.put(property, trie);
+                continue;
+            }
+            
+            // Merge frontiers element by element. Frontiers are antichains, which hold at most one element per
+            // page in the last dimension, so walking both tries together does not prune enough to pay off.
+            TrieIterator iterator = entry.getValue()._iterator();
+            for (int[] node = iterator.next(); node != null; node = iterator.next()) {
+                int level = iterator.level();
+                if (!trie.contains(node, level)) {
+                    trie.clear(node);
+                    trie.put(node, level);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the tries that store the frontiers of properties with the direction of the given property
+     * @param property
+     * @return
+     */
+    private Map<PredictiveProperty, JHPLTrie> getFrontiers(PredictiveProperty property) {
+        switch (property.getDirection()) {
+        case UP:
+            return this.propertiesUp;
+        case DOWN:
+            return this.propertiesDown;
+        default:
+            throw new IllegalArgumentException("Frontiers are only defined for properties that are predictive in one direction");
+        }
+    }
+
+    /**
+     * Checks whether the given query only returns stored nodes
+     * @param query
+     * @return
+     */
+    private JHPLQuery checkBounded(JHPLQuery query) {
+        if (!query.isBounded()) {
+            throw new IllegalArgumentException("Query is not bounded by the nodes stored in the lattice");
+        }
+        return query;
+    }
+
     /**
      * Enumerates all nodes regardless of whether or not they are stored in the lattice. Note: hasNext() is
      * not implemented. Simply iterate until <code>null</code> is returned.
@@ -710,24 +1026,6 @@ public class Lattice<T, U> {
     }
 
 
-    /**
-     * Materializes the whole lattice
-     * @param element
-     * @param heights
-     * @param dimension
-     * @param trie
-     */
-    private void materialize(int[] element, int level, int[] heights, int dimension, JHPLTrie trie) {
-        if (dimension == heights.length) {
-            trie.put(element);
-        } else {
-            for (int i=0; i<heights[dimension]; i++) {
-                element[dimension] = i;
-                materialize(element, level + i, heights, dimension + 1, trie);
-            }
-        }
-    }
-
     /**
      * To string
      * @param builder
@@ -763,6 +1061,41 @@ public class Lattice<T, U> {
         }
     }
 
+    /**
+     * Returns the master trie
+     * @return
+     */
+    JHPLTrieEQ getMaster() {
+        return this.master;
+    }
+
+    /**
+     * Returns the map for the given non-predictive property, <code>null</code> if there is none
+     * @param property
+     * @return
+     */
+    JHPLMap<Boolean> getPropertyMap(PredictiveProperty property) {
+        return this.propertiesNone.get(property);
+    }
+
+    /**
+     * Returns the trie for the given downwards-predictive property, <code>null</code> if there is none
+     * @param property
+     * @return
+     */
+    JHPLTrie getPropertyTrieDown(PredictiveProperty property) {
+        return this.propertiesDown.get(property);
+    }
+
+    /**
+     * Returns the trie for the given upwards-predictive property, <code>null</code> if there is none
+     * @param property
+     * @return
+     */
+    JHPLTrie getPropertyTrieUp(PredictiveProperty property) {
+        return this.propertiesUp.get(property);
+    }
+
     /**
      * For checking for concurrent modifications
      */
@@ -807,22 +1140,47 @@ public class Lattice<T, U> {
      * by enumerateAllNodes(). It is here for your convenience, only. 
      */
     void materialize() {
-        int[] element = new int[nodes.getDimensions()];
-        int[] heights = nodes.getHeights();
-        materialize(element, 0, heights, 0, master);
+        this.setModified();
+        this.master.materialize();
+    }
+
+    /**
+     * Materializes all nodes with the given identifiers. This method is similar to calling put() for each 
+     * of the nodes. Identifiers should be sorted in ascending order.
+     * @param identifiers
+     */
+    void materialize(LongIterator identifiers) {
+        this.setModified();
+        this.master.put(identifiers, this.multiplier);
+    }
+
+    /**
+     * Enumerates all nodes on the given level that qualify for the given query. If level is negative, nodes
+     * on all levels will be returned.
+     * @param query
+     * @param level
+     * @return
+     */
+    Iterator<int[]> query(JHPLQuery query, int level) {
+        return new WrappedIntArrayIterator(this, query.iterator(this, level));
     }
 
     /**
      * For checking for concurrent modifications
      */
     void setModified() {
+        if (frozen) {
+            throw new IllegalStateException("Lattice is frozen");
+        }
         this.modified = true;
     }
     
     /**
-     * For checking for concurrent modifications
+     * For checking for concurrent modifications. Frozen lattices are never modified.
      */
     void setUnmodified() {
-        this.modified = false;
+        if (!frozen) {
+            this.modified = false;
+        }
     }
 }
\ No newline at end of file
@@ -15,6 +15,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Random;
 
 import de.linearbits.jhpl.JHPLIterator.LongIterator;
 import de.linearbits.jhpl.JHPLIterator.WrappedIntArrayIterator;
@@ -73,6 +74,8 @@ public class LatticeHighdimensional<T, U> extends Lattice<T, U> {
     private final Map<PredictiveProperty, Map<IntArrayWrapper, Boolean>> propertiesNone;
     /** Track modifications */
     private boolean                                                      modified = false;
+    /** Whether the lattice can no longer be modified */
+    private boolean                                                      frozen   = false;
 
     /**
      * Constructs a new lattice
@@ -109,10 +112,53 @@ public class LatticeHighdimensional<T, U> extends Lattice<T, U> {
         this.master = new JHPLTrieEQ(this);
     }
     
+    @Override
+    public void compactify() {
+        compactify(false);
+    }
+
+    @Override
+    public void compactify(boolean layout) {
+        if (frozen) {
+            return;
+        }
+        for (JHPLTrie trie : this.propertiesUp.values()) {
+            trie.deduplicate();
+            if (layout) {
+                trie.layout();
+            }
+        }
+        for (JHPLTrie trie : this.propertiesDown.values()) {
+            trie.deduplicate();
+            if (layout) {
+                trie.layout();
+            }
+        }
+    }
+    
     @Override
     public boolean contains(int[] node) {
         return master.contains(node);
     }
+
+    @Override
+    public void freeze() {
+        if (frozen) {
+            return;
+        }
+        this.master.deduplicate();
+        this.master.trim();
+        for (JHPLTrie trie : this.propertiesUp.values()) {
+            trie.deduplicate();
+            trie.trim();
+        }
+        for (JHPLTrie trie : this.propertiesDown.values()) {
+            trie.deduplicate();
+            trie.trim();
+        }
+        this.modified = false;
+        this.frozen = true;
+    }
     
     @Override
     public long getByteSize() {
@@ -174,11 +220,26 @@ public class LatticeHighdimensional<T, U> extends Lattice<T, U> {
         return hasProperty(node, nodes.getLevel(node), property);
     }
 
+    @Override
+    public void importFrontier(PredictiveProperty property, LongIterator identifiers) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isFrozen() {
+        return frozen;
+    }
+
     @Override
     public LongIterator listAllNodesAsIdentifiersImpl(final int level) {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public LongIterator listFrontier(PredictiveProperty property) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public Iterator<int[]> listNodes() {
         return new WrappedIntArrayIterator(this, this.master.iterator());
@@ -194,6 +255,26 @@ public class LatticeHighdimensional<T, U> extends Lattice<T, U> {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public LongIterator listNodesAsIdentifiers(int level) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<int[]> listNodes(JHPLQuery query) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<int[]> listNodes(JHPLQuery query, int level) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void mergeFrom(Lattice<T, U> other, JHPLConflictPolicy<U> policy) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public JHPLNodes<T> nodes() {
         return nodes;
@@ -214,6 +295,16 @@ public class LatticeHighdimensional<T, U> extends Lattice<T, U> {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public long numNodes(JHPLQuery query) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long numNodes(JHPLQuery query, int level) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void putData(int[] node, U data) {
         throw new UnsupportedOperationException();
@@ -274,6 +365,11 @@ public class LatticeHighdimensional<T, U> extends Lattice<T, U> {
         putProperty(node, nodes.getLevel(node), property);
     }
 
+    @Override
+    public Iterator<int[]> sampleWithoutProperty(PredictiveProperty property, int level, int k, Random random) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public JHPLSpace<T> space() {
         throw new UnsupportedOperationException();
@@ -449,17 +545,27 @@ public class LatticeHighdimensional<T, U> extends Lattice<T, U> {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    void materialize(LongIterator identifiers) {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * For checking for concurrent modifications
      */
     void setModified() {
+        if (frozen) {
+            throw new IllegalStateException("Lattice is frozen");
+        }
         this.modified = true;
     }
     
     /**
-     * For checking for concurrent modifications
+     * For checking for concurrent modifications. Frozen lattices are never modified.
      */
     void setUnmodified() {
-        this.modified = false;
+        if (!frozen) {
+            this.modified = false;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,302 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.search;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import de.linearbits.jhpl.JHPLQuery;
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.PredictiveProperty;
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+
+/**
+ * This class implements a search over a lattice with a monotonic predicate. Nodes for which the predicate
+ * holds are tagged with an upwards-predictive property, nodes for which it does not hold are tagged with a
+ * downwards-predictive property. Nodes that are already classified by these properties are never evaluated.
+ * Evaluations are performed concurrently, while the lattice is only accessed by the calling thread.
+ * After a search, all nodes in the lattice are classified.
+ *
+ * @author Fabian Prasser
+ */
+public class LatticeSearch {
+
+    /**
+     * A chain of nodes, ordered by level. As properties are predictive, the nodes that are not classified
+     * yet form an interval.
+     * @author Fabian Prasser
+     */
+    private static class Chain {
+
+        /** Identifiers of the nodes */
+        private final long[] nodes;
+        /** First node not classified yet */
+        private int          low;
+        /** Last node not classified yet */
+        private int          high;
+
+        /**
+         * Creates a new instance
+         * @param nodes
+         */
+        Chain(long[] nodes) {
+            this.nodes = nodes;
+            this.low = 0;
+            this.high = nodes.length - 1;
+        }
+    }
+
+    /** The lattice */
+    private final Lattice<?, ?>      lattice;
+    /** The predicate */
+    private final MonotonicPredicate predicate;
+    /** Property for nodes for which the predicate holds */
+    private final PredictiveProperty positive;
+    /** Property for nodes for which the predicate does not hold */
+    private final PredictiveProperty negative;
+    /** The number of concurrent evaluations */
+    private final int                parallelism;
+    /** Query for nodes that are not classified */
+    private final JHPLQuery          unclassified;
+    /** The number of evaluations performed */
+    private long                     evaluations;
+
+    /**
+     * Creates a new instance that performs as many concurrent evaluations as there are processors
+     * @param lattice
+     * @param predicate
+     * @param positive
+     * @param negative
+     */
+    public LatticeSearch(Lattice<?, ?> lattice,
+                         MonotonicPredicate predicate,
+                         PredictiveProperty positive,
+                         PredictiveProperty negative) {
+        this(lattice, predicate, positive, negative, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new instance
+     * @param lattice
+     * @param predicate
+     * @param positive Upwards-predictive property for nodes for which the predicate holds
+     * @param negative Downwards-predictive property for nodes for which the predicate does not hold
+     * @param parallelism
+     */
+    public LatticeSearch(Lattice<?, ?> lattice,
+                         MonotonicPredicate predicate,
+                         PredictiveProperty positive,
+                         PredictiveProperty negative,
+                         int parallelism) {
+
+        // Check
+        if (positive.getDirection() != Direction.UP) {
+            throw new IllegalArgumentException("Property for positive results must be predictive in an upwards direction");
+        }
+        if (negative.getDirection() != Direction.DOWN) {
+            throw new IllegalArgumentException("Property for negative results must be predictive in a downwards direction");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+
+        // Init
+        this.lattice = lattice;
+        this.predicate = predicate;
+        this.positive = positive;
+        this.negative = negative;
+        this.parallelism = parallelism;
+        this.unclassified = JHPLQuery.all().andNot(JHPLQuery.property(positive).or(JHPLQuery.property(negative)));
+    }
+
+    /**
+     * Returns the number of evaluations performed so far
+     * @return
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Searches the lattice with the given strategy
+     * @param strategy
+     */
+    public void search(SearchStrategy strategy) {
+        ForkJoinPool pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+        try {
+            switch (strategy) {
+            case BOTTOM_UP:
+                for (int level = 0; level < lattice.numLevels(); level++) {
+                    evaluate(pool, list(level));
+                }
+                break;
+            case TOP_DOWN:
+                for (int level = lattice.numLevels() - 1; level >= 0; level--) {
+                    evaluate(pool, list(level));
+                }
+                break;
+            case BINARY:
+                searchBinary(pool);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown strategy");
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Evaluates the given nodes and stores the results. Nodes must not be classified.
+     * @param pool
+     * @param nodes
+     * @return the results
+     */
+    private boolean[] evaluate(ForkJoinPool pool, final List<int[]> nodes) {
+
+        // Evaluate
+        boolean[] results = new boolean[nodes.size()];
+        if (pool == null || nodes.size() == 1) {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = predicate.evaluate(nodes.get(i).clone());
+            }
+        } else {
+            List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+            for (final int[] node : nodes) {
+                tasks.add(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return predicate.evaluate(node.clone());
+                    }
+                });
+            }
+            List<Future<Boolean>> futures = pool.invokeAll(tasks);
+            for (int i = 0; i < results.length; i++) {
+                try {
+                    results[i] = futures.get(i).get();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+
+        // Store
+        evaluations += results.length;
+        for (int i = 0; i < results.length; i++) {
+            lattice.putProperty(nodes.get(i), results[i] ? positive : negative);
+        }
+        return results;
+    }
+
+    /**
+     * Lists all nodes on the given level that are not classified
+     * @param level
+     * @return
+     */
+    private List<int[]> list(int level) {
+        List<int[]> result = new ArrayList<int[]>();
+        Iterator<int[]> iterator = lattice.unsafe().listNodes(unclassified, level);
+        while (iterator.hasNext()) {
+            result.add(iterator.next().clone());
+        }
+        return result;
+    }
+
+    /**
+     * Performs binary searches over the chains of a symmetric chain decomposition. Searches on multiple
+     * chains are performed in parallel. Chains that are already classified are skipped.
+     * @param pool
+     */
+    private void searchBinary(ForkJoinPool pool) {
+
+        // Init
+        List<Chain> chains = new ArrayList<Chain>();
+        Iterator<long[]> decomposition = lattice.nodes().listChains();
+
+        while (true) {
+
+            // Create chains
+            while (chains.size() < parallelism && decomposition.hasNext()) {
+                Chain chain = new Chain(decomposition.next());
+                if (trim(chain)) {
+                    chains.add(chain);
+                }
+            }
+
+            // Done
+            if (chains.isEmpty()) {
+                return;
+            }
+
+            // Evaluate the middle of each chain
+            List<int[]> batch = new ArrayList<int[]>();
+            for (Chain chain : chains) {
+                batch.add(lattice.space().toIndex(chain.nodes[(chain.low + chain.high) / 2]));
+            }
+            evaluate(pool, batch);
+
+            // Trim chains
+            Iterator<Chain> iterator = chains.iterator();
+            while (iterator.hasNext()) {
+                if (!trim(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes classified nodes from both ends of the chain with a binary search. Returns whether
+     * the chain still contains nodes that are not classified.
+     * @param chain
+     * @return
+     */
+    private boolean trim(Chain chain) {
+
+        // Skip negative prefix
+        int low = chain.low;
+        int high = chain.high + 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lattice.hasProperty(lattice.space().toIndex(chain.nodes[mid]), negative)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        chain.low = low;
+
+        // Skip positive suffix
+        high = chain.high + 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lattice.hasProperty(lattice.space().toIndex(chain.nodes[mid]), positive)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        chain.high = low - 1;
+
+        // Return
+        return chain.low <= chain.high;
+    }
+}
@@ -0,0 +1,29 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.search;
+
+/**
+ * A predicate that is monotonic within the lattice. This means that, if it holds for a node, it also holds 
+ * for all (direct and indirect) successors of the node. Implementations must be thread-safe, as nodes
+ * may be evaluated concurrently.
+ * 
+ * @author Fabian Prasser
+ */
+public interface MonotonicPredicate {
+
+    /**
+     * Evaluates the predicate for the given node. The array is not used by the search after this call.
+     * @param node
+     * @return
+     */
+    public boolean evaluate(int[] node);
+}
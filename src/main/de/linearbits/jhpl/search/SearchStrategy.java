@@ -0,0 +1,26 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.search;
+
+/**
+ * Strategies for searching the lattice
+ * 
+ * @author Fabian Prasser
+ */
+public enum SearchStrategy {
+    /** Evaluates all unclassified nodes level by level, starting with the bottom node*/
+    BOTTOM_UP,
+    /** Evaluates all unclassified nodes level by level, starting with the top node*/
+    TOP_DOWN,
+    /** Performs binary searches over chains of unclassified nodes*/
+    BINARY
+}
@@ -0,0 +1,157 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import de.linearbits.jhpl.test.Util;
+
+/**
+ * Test class for generated shapes. This class is located in the package of the library, as shapes are
+ * not part of the public API.
+ * @author Fabian Prasser
+ *
+ */
+public class Test25 {
+
+    /** Maximal number of nodes that are checked exhaustively */
+    private static final int MAX_EXHAUSTIVE = 200000;
+    /** Number of nodes that are sampled from larger lattices */
+    private static final int SAMPLES        = 100000;
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test25();
+    }
+
+    /**
+     * Returns a lattice with the given heights
+     * @param heights
+     * @return
+     */
+    private static Lattice<Integer, Integer> getLattice(int[] heights) {
+        Integer[][] elements = new Integer[heights.length][];
+        for (int i = 0; i < heights.length; i++) {
+            elements[i] = new Integer[heights[i]];
+            for (int j = 0; j < heights[i]; j++) {
+                elements[i][j] = j;
+            }
+        }
+        return new Lattice<Integer, Integer>(elements);
+    }
+
+    /**
+     * Checks the conversions of the given node against a brute-force computation. Returns the number of errors.
+     * @param lattice
+     * @param shape
+     * @param heights
+     * @param id
+     * @return
+     */
+    private static int check(Lattice<Integer, Integer> lattice, JHPLShape shape, int[] heights, long id) {
+
+        // Brute force
+        int[] expected = new int[heights.length];
+        int level = 0;
+        long remaining = id;
+        for (int i = heights.length - 1; i >= 0; i--) {
+            expected[i] = (int) (remaining % heights[i]);
+            remaining /= heights[i];
+            level += expected[i];
+        }
+
+        // Compare
+        int errors = 0;
+        errors += Arrays.equals(shape.toIndex(new int[heights.length], id), expected) ? 0 : 1;
+        errors += Arrays.equals(lattice.space().toIndex(id), expected) ? 0 : 1;
+        errors += shape.toId(expected) == id ? 0 : 1;
+        errors += lattice.space().toId(expected) == id ? 0 : 1;
+        errors += shape.getLevel(id) == level ? 0 : 1;
+        errors += lattice.nodes().getLevel(id) == level ? 0 : 1;
+        return errors;
+    }
+
+    /**
+     * Test method
+     */
+    private static void test25() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    25             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Checking conversions of generated shapes against brute force");
+
+        // Shapes with 1 to 15 dimensions, trivial dimensions and large products
+        Random random = new Random(0);
+        int[][] shapes = new int[20][];
+        shapes[0] = new int[] { 1 };
+        shapes[1] = new int[] { 7 };
+        shapes[2] = new int[] { 1, 1 };
+        shapes[3] = new int[] { 2, 2, 2 };
+        shapes[4] = new int[] { 3, 1, 5 };
+        shapes[5] = new int[] { 1, 4, 1, 6 };
+        shapes[6] = new int[] { 100000, 1, 100000, 1000 };
+        shapes[7] = new int[] { 65536, 65536, 65536 };
+        shapes[8] = new int[] { 3, 1000003, 999983, 7 };
+        shapes[9] = new int[] { 2, 3, 1, 2, 3, 2, 1, 2, 3, 2, 2, 1, 3, 2, 2 };
+        for (int i = 10; i < shapes.length; i++) {
+            shapes[i] = new int[i - 9 + (i % 2) * 5];
+            for (int j = 0; j < shapes[i].length; j++) {
+                shapes[i][j] = 1 + random.nextInt(5);
+            }
+        }
+
+        int errors = 0;
+        int notCompiled = 0;
+        for (int[] heights : shapes) {
+
+            Lattice<Integer, Integer> lattice = getLattice(heights);
+            JHPLShape shape = lattice.nodes().getShape();
+            long numNodes = lattice.numNodes();
+            int shapeErrors = 0;
+
+            // All nodes or a sample with the first and last node
+            if (numNodes <= MAX_EXHAUSTIVE) {
+                for (long id = 0; id < numNodes; id++) {
+                    shapeErrors += check(lattice, shape, heights, id);
+                }
+            } else {
+                shapeErrors += check(lattice, shape, heights, 0);
+                shapeErrors += check(lattice, shape, heights, numNodes - 1);
+                for (int i = 0; i < SAMPLES; i++) {
+                    shapeErrors += check(lattice, shape, heights, (long) (random.nextDouble() * numNodes));
+                }
+            }
+
+            // Generated code must be used, where supported
+            boolean compiled = JHPLShape.isSupported() && !JHPLShape.isPowerset(heights);
+            if (compiled != shape.isCompiled()) {
+                notCompiled++;
+            }
+            System.out.println(" - Heights " + Arrays.toString(heights) + ": " + numNodes + " nodes, " +
+                               (shape.isCompiled() ? "compiled" : "not compiled") + ", " + shapeErrors + " errors");
+            errors += shapeErrors;
+        }
+
+        System.out.println("");
+        System.out.println("Results");
+        Util.check("Differences", errors);
+        Util.check("Shapes not compiled", notCompiled);
+        Util.check("Failures of code generation", JHPLShape.getFailures());
+    }
+}
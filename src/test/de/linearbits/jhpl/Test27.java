@@ -0,0 +1,194 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import de.linearbits.jhpl.test.Util;
+
+/**
+ * Test class for packed frontiers. This class is located in the package of the library, as frontiers are
+ * not part of the public API.
+ * @author Fabian Prasser
+ *
+ */
+public class Test27 {
+
+    /** Heights of the lattice. Values of 16 use all bits of a dimension, values of 17 need an additional bit. */
+    private static final int[] HEIGHTS = { 16, 17, 16, 17 };
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test27();
+    }
+
+    /**
+     * Returns a lattice with the given heights
+     * @param heights
+     * @return
+     */
+    private static Lattice<Integer, Integer> getLattice(int[] heights) {
+        Integer[][] elements = new Integer[heights.length][];
+        for (int i = 0; i < heights.length; i++) {
+            elements[i] = new Integer[heights[i]];
+            for (int j = 0; j < heights[i]; j++) {
+                elements[i][j] = j;
+            }
+        }
+        return new Lattice<Integer, Integer>(elements);
+    }
+
+    /**
+     * Returns whether each value of the first node is less than or equal to the according value of the second node
+     * @param node1
+     * @param node2
+     * @return
+     */
+    private static boolean isLessOrEqual(int[] node1, int[] node2) {
+        for (int i = 0; i < node1.length; i++) {
+            if (node1[i] > node2[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the trie with the nodes stored before. Returns the number of differences.
+     * @param lattice
+     * @param trie
+     * @param nodes
+     * @return
+     */
+    private static int check(Lattice<Integer, Integer> lattice, JHPLTrie trie, List<int[]> nodes) {
+        int differences = 0;
+        for (long id = 0; id < lattice.numNodes(); id++) {
+            int[] node = lattice.space().toIndex(id);
+            boolean expected = false;
+            for (int[] other : nodes) {
+                if (isLessOrEqual(other, node)) {
+                    expected = true;
+                    break;
+                }
+            }
+            differences += trie.contains(node, lattice.nodes().getLevel(node)) == expected ? 0 : 1;
+        }
+        return differences;
+    }
+
+    /**
+     * Stores the given node in the trie, as done when storing a property
+     * @param lattice
+     * @param trie
+     * @param node
+     */
+    private static void put(Lattice<Integer, Integer> lattice, JHPLTrie trie, int[] node) {
+        int level = lattice.nodes().getLevel(node);
+        if (!trie.contains(node, level)) {
+            trie.clear(node);
+            trie.put(node, level);
+        }
+    }
+
+    /**
+     * Test method
+     */
+    private static void test27() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    27             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Comparing nodes with values at the boundaries of dimensions 16x17x16x17");
+
+        // All combinations of boundary values
+        Lattice<Integer, Integer> lattice = getLattice(HEIGHTS);
+        List<int[]> nodes = new ArrayList<int[]>();
+        int[] node = new int[HEIGHTS.length];
+        int[] indices = new int[HEIGHTS.length];
+        while (indices[0] < 5) {
+            for (int i = 0; i < HEIGHTS.length; i++) {
+                int[] values = { 0, 1, HEIGHTS[i] / 2, HEIGHTS[i] - 2, HEIGHTS[i] - 1 };
+                node[i] = values[indices[i]];
+            }
+            nodes.add(node.clone());
+            for (int i = HEIGHTS.length - 1; i >= 0 && ++indices[i] == 5 && i > 0; i--) {
+                indices[i] = 0;
+            }
+        }
+
+        // Compare each pair of nodes with brute force and with isParentChild()
+        int differences = 0;
+        for (boolean up : new boolean[] { true, false }) {
+            for (int[] element : nodes) {
+                JHPLFrontier frontier = JHPLFrontier.create(HEIGHTS, up);
+                frontier.put(element);
+                for (int[] other : nodes) {
+                    boolean expected = up ? isLessOrEqual(element, other) : isLessOrEqual(other, element);
+                    boolean related = Arrays.equals(element, other) ||
+                                      (up ? lattice.nodes().isParentChild(other, element) :
+                                            lattice.nodes().isParentChild(element, other));
+                    boolean contained = frontier.contains(other, lattice.nodes().getLevel(other));
+                    differences += contained == expected ? 0 : 1;
+                    differences += contained == related ? 0 : 1;
+                }
+            }
+        }
+        System.out.println(" - Pairs: " + (nodes.size() * nodes.size()));
+        Util.check("Differences", differences);
+
+        System.out.println("");
+        System.out.println("Storing 300 random nodes on level 30");
+        Random random = new Random(0);
+        JHPLTrie trie = new JHPLTrieLEQ(lattice);
+        nodes.clear();
+        while (nodes.size() < 300) {
+            node = lattice.space().toIndex((long) (random.nextDouble() * lattice.numNodes()));
+            if (lattice.nodes().getLevel(node) == 30 && !trie.contains(node, 30)) {
+                put(lattice, trie, node);
+                nodes.add(node);
+            }
+        }
+        Util.check("Frontiers available", trie.frontier == null ? 0 : 1);
+        Util.check("Differences", check(lattice, trie, nodes));
+
+        System.out.println("");
+        System.out.println("Storing a node that implies most nodes and compacting the trie");
+        node = new int[] { 1, 1, 1, 1 };
+        put(lattice, trie, node);
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            if (isLessOrEqual(node, nodes.get(i))) {
+                nodes.remove(i);
+            }
+        }
+        nodes.add(node);
+        System.out.println(" - Frontier size: " + nodes.size());
+        trie.deduplicate();
+        Util.check("Frontiers not available", trie.frontier == null ? 1 : 0);
+        Util.check("Differences", check(lattice, trie, nodes));
+
+        System.out.println("");
+        System.out.println("Copying the trie after dropping its frontier");
+        trie.frontier = null;
+        JHPLTrie copy = new JHPLTrieLEQ(lattice);
+        copy.copy(trie);
+        Util.check("Frontiers not available", copy.frontier == null ? 1 : 0);
+        Util.check("Differences", check(lattice, copy, nodes));
+    }
+}
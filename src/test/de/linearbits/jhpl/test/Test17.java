@@ -0,0 +1,88 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+import de.linearbits.jhpl.Lattice;
+
+/**
+ * Test class
+ * @author Fabian Prasser
+ *
+ */
+public class Test17 {
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test17();
+    }
+
+    /**
+     * Test method
+     */
+    private static void test17() {
+        
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    17             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Testing packed id mappings");
+        System.out.println("");
+
+        // Elements per dimension
+        String[][] elements = new String[][]{ {"A", "B", "C"},
+                                              {"A", "B"},
+                                              {"A", "B", "C", "D", "E"}};
+        
+        // Create lattice with String-keys and Integer-values
+        Lattice<String, Integer> lattice = new Lattice<String, Integer>(elements);
+        System.out.println("Words: " + lattice.space().getPackedIdWords());
+        
+        Iterator<int[]> iter = lattice.unsafe().listAllNodes();
+        while (iter.hasNext()) {
+            int[] node = iter.next();
+            long id = lattice.space().toId(node);
+            long packed = lattice.space().toPackedId(node);
+            System.out.println("Node: " + Arrays.toString(node));
+            System.out.println(" - packed: " + Long.toBinaryString(packed) + " / " + Arrays.toString(lattice.space().toIndexFromPackedId(new int[3], packed)));
+            System.out.println(" - id    : " + id + " / " + lattice.space().toIdFromPackedId(packed) + " / " + Long.toBinaryString(lattice.space().toPackedIdFromId(id)));
+            System.out.println(" - level : " + lattice.nodes().getLevel(id) + " / " + lattice.nodes().getLevelPacked(packed));
+            System.out.print  (" - successors: ");
+            LongIterator successors = lattice.nodes().listSuccessorsPacked(packed);
+            while (successors.hasNext()) {
+                System.out.print(Arrays.toString(lattice.space().toIndexFromPackedId(new int[3], successors.next())) + " ");
+            }
+            System.out.println("");
+        }
+        
+        // Lattice with packed ids that require two words
+        String[][] large = new String[39][];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = new String[] { "0", "1", "2" };
+        }
+        Lattice<String, Integer> lattice2 = new Lattice<String, Integer>(large);
+        int[] node = lattice2.nodes().getTop();
+        long[] packed = lattice2.space().toPackedId(new long[lattice2.space().getPackedIdWords()], node);
+        System.out.println("");
+        System.out.println("Words: " + lattice2.space().getPackedIdWords());
+        System.out.println(" - packed: " + Arrays.toString(packed));
+        System.out.println(" - TRUE: " + Arrays.equals(node, lattice2.space().toIndexFromPackedId(new int[node.length], packed)));
+        System.out.println(" - TRUE: " + (lattice2.space().toIdFromPackedId(packed) == lattice2.numNodes() - 1));
+    }    
+}
@@ -0,0 +1,146 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Iterator;
+
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+import de.linearbits.jhpl.Lattice;
+
+/**
+ * Test class
+ * @author Fabian Prasser
+ *
+ */
+public class Test18 {
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test18();
+    }
+
+    /**
+     * Enumerates all elements from the iterator
+     * @param iter
+     * @return the number of elements enumerated
+     */
+    private static int enumerate(Iterator<?> iter) {
+
+        int count = 0;
+        while (iter.hasNext()) {
+            iter.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Enumerates all elements from the iterator
+     * @param iter
+     * @return the number of elements enumerated
+     */
+    private static int enumerate(LongIterator iter) {
+
+        int count = 0;
+        while (iter.hasNext()) {
+            iter.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns a lattice of size 10^dimensions
+     * @param dimensions
+     * @return
+     */
+    private static Lattice<String, Integer> getLattice(int dimensions) {
+        String[][] elements = new String[dimensions][];
+        for (int i=0; i<dimensions; i++) {
+            elements[i] = new String[]{"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+        }
+        return new Lattice<String, Integer>(elements);
+    }
+
+    /**
+     * Test method
+     */
+    private static void test18() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    18             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Creating lattice with 1M elements");
+        System.out.println("");
+
+        // Create lattice
+        Lattice<String, Integer> lattice = getLattice(6);
+
+        System.out.println("Randomly storing 100000 nodes");
+        long time = System.currentTimeMillis();
+        for (int i=0; i<100000; i++) {
+            long id = (long)(Math.random() * (lattice.numNodes() - 1));
+            lattice.putData(lattice.space().toIndex(id), 0);
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Time needed: "+ time);
+
+        System.out.println("");
+        System.out.println("Listing all nodes on each level with boxed space mapping");
+        time = System.currentTimeMillis();
+        int total = 0;
+        for (int level = 0; level < lattice.numLevels(); level++) {
+            total += enumerate(lattice.space().indexIteratorToIdIterator(lattice.listNodes(level)));
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Nodes enumerated: "+ total);
+        System.out.println(" - Time needed: "+ time);
+
+        System.out.println("");
+        System.out.println("Listing all nodes on each level with primitive space mapping");
+        time = System.currentTimeMillis();
+        total = 0;
+        for (int level = 0; level < lattice.numLevels(); level++) {
+            total += enumerate(lattice.space().indexIteratorToLongIdIterator(lattice.listNodes(level)));
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Nodes enumerated: "+ total);
+        System.out.println(" - Time needed: "+ time);
+
+        System.out.println("");
+        System.out.println("Listing all identifiers on each level");
+        time = System.currentTimeMillis();
+        total = 0;
+        for (int level = 0; level < lattice.numLevels(); level++) {
+            total += enumerate(lattice.listNodesAsIdentifiers(level));
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Nodes enumerated: "+ total);
+        System.out.println(" - Time needed: "+ time);
+
+        System.out.println("");
+        System.out.println("Listing all identifiers on each level with primitive space mapping");
+        time = System.currentTimeMillis();
+        total = 0;
+        for (int level = 0; level < lattice.numLevels(); level++) {
+            total += enumerate(lattice.space().idIteratorToIndexIterator(lattice.listNodesAsIdentifiers(level)));
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Nodes enumerated: "+ total);
+        System.out.println(" - Time needed: "+ time);
+    }
+}
@@ -0,0 +1,100 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Iterator;
+
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.PredictiveProperty;
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+
+/**
+ * Test class
+ * @author Fabian Prasser
+ *
+ */
+public class Test19 {
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test19();
+    }
+
+    /**
+     * Returns a lattice of size 10^dimensions
+     * @param dimensions
+     * @return
+     */
+    private static Lattice<String, Integer> getLattice(int dimensions) {
+        String[][] elements = new String[dimensions][];
+        for (int i=0; i<dimensions; i++) {
+            elements[i] = new String[]{"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+        }
+        return new Lattice<String, Integer>(elements);
+    }
+
+    /**
+     * Test method
+     */
+    private static void test19() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    19             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Creating lattice with 1M elements");
+        System.out.println("");
+
+        // Create lattice
+        Lattice<String, Integer> lattice = getLattice(6);
+        PredictiveProperty property = new PredictiveProperty("Property", Direction.UP);
+
+        System.out.println("Storing property for all nodes on level 27");
+        long time = System.currentTimeMillis();
+        Iterator<int[]> iter = lattice.unsafe().listAllNodes(27);
+        int count = 0;
+        for (int[] node = iter.next(); node != null; node = iter.next()) {
+            lattice.putProperty(node, property);
+            count++;
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Nodes: "+ count);
+        System.out.println(" - Time needed: "+ time);
+        System.out.println(" - Memory: "+ lattice.getByteSize());
+
+        System.out.println("");
+        System.out.println("Compacting lattice");
+        time = System.currentTimeMillis();
+        lattice.compactify();
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Time needed: "+ time);
+        System.out.println(" - Memory: "+ lattice.getByteSize());
+
+        System.out.println("");
+        System.out.println("Checking all nodes");
+        time = System.currentTimeMillis();
+        iter = lattice.unsafe().listAllNodes();
+        int total = 0;
+        for (int[] node = iter.next(); node != null; node = iter.next()) {
+            if (lattice.hasProperty(node, property)) {
+                total++;
+            }
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Nodes with property: "+ total);
+        System.out.println(" - Time needed: "+ time);
+    }
+}
@@ -0,0 +1,125 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Iterator;
+
+import de.linearbits.jhpl.JHPLQuery;
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.PredictiveProperty;
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+
+/**
+ * Test class
+ * @author Fabian Prasser
+ *
+ */
+public class Test20 {
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test20();
+    }
+
+    /**
+     * Returns a lattice of size 10^dimensions
+     * @param dimensions
+     * @return
+     */
+    private static Lattice<String, Integer> getLattice(int dimensions) {
+        String[][] elements = new String[dimensions][];
+        for (int i=0; i<dimensions; i++) {
+            elements[i] = new String[]{"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+        }
+        return new Lattice<String, Integer>(elements);
+    }
+
+    /**
+     * Test method
+     */
+    private static void test20() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    20             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Creating lattice with 1M elements");
+        System.out.println("");
+
+        // Create lattice
+        Lattice<String, Integer> lattice = getLattice(6);
+        PredictiveProperty property1 = new PredictiveProperty("Property1", Direction.UP);
+        PredictiveProperty property2 = new PredictiveProperty("Property2", Direction.DOWN);
+
+        System.out.println("Randomly storing properties for 1000 nodes");
+        for (int i=0; i<1000; i++) {
+            long id = (long)(Math.random() * (lattice.numNodes() - 1));
+            int[] node = lattice.space().toIndex(id);
+            lattice.putProperty(node, lattice.nodes().getLevel(node) < 27 ? property1 : property2);
+        }
+
+        System.out.println("");
+        System.out.println("Listing all nodes with property 1 but not property 2 on each level with filters");
+        long time = System.currentTimeMillis();
+        int total = 0;
+        for (int level = 0; level < lattice.numLevels(); level++) {
+            Iterator<int[]> iter = lattice.unsafe().listNodesWithProperty(property1, level);
+            while (iter.hasNext()) {
+                if (!lattice.hasProperty(iter.next(), property2)) {
+                    total++;
+                }
+            }
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Nodes enumerated: "+ total);
+        System.out.println(" - Time needed: "+ time);
+
+        JHPLQuery query = JHPLQuery.property(property1).andNot(JHPLQuery.property(property2));
+        System.out.println("");
+        System.out.println("Listing all nodes with property 1 but not property 2 on each level with a query");
+        time = System.currentTimeMillis();
+        total = 0;
+        for (int level = 0; level < lattice.numLevels(); level++) {
+            Iterator<int[]> iter = lattice.unsafe().listNodes(query, level);
+            while (iter.hasNext()) {
+                iter.next();
+                total++;
+            }
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Nodes enumerated: "+ total);
+        System.out.println(" - Time needed: "+ time);
+
+        System.out.println("");
+        System.out.println("Counting all nodes with property 1 but not property 2 on each level with a query");
+        time = System.currentTimeMillis();
+        long count = 0;
+        for (int level = 0; level < lattice.numLevels(); level++) {
+            count += lattice.unsafe().numNodes(query, level);
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Nodes counted: "+ count);
+        System.out.println(" - Time needed: "+ time);
+
+        System.out.println("");
+        System.out.println("Counting all stored nodes with property 2");
+        time = System.currentTimeMillis();
+        count = lattice.numNodes(JHPLQuery.stored().and(JHPLQuery.property(property2)));
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Nodes counted: "+ count);
+        System.out.println(" - Time needed: "+ time);
+    }
+}
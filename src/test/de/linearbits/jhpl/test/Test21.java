@@ -0,0 +1,136 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Iterator;
+
+import de.linearbits.jhpl.JHPLConflictPolicy;
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.PredictiveProperty;
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+
+/**
+ * Test class
+ * @author Fabian Prasser
+ *
+ */
+public class Test21 {
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test21();
+    }
+
+    /**
+     * Returns a lattice of size 10^dimensions
+     * @param dimensions
+     * @return
+     */
+    private static Lattice<String, Integer> getLattice(int dimensions) {
+        String[][] elements = new String[dimensions][];
+        for (int i=0; i<dimensions; i++) {
+            elements[i] = new String[]{"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+        }
+        return new Lattice<String, Integer>(elements);
+    }
+
+    /**
+     * Randomly stores data and properties
+     * @param lattice
+     * @param property
+     */
+    private static void populate(Lattice<String, Integer> lattice, PredictiveProperty property) {
+        for (int i=0; i<100000; i++) {
+            long id = (long)(Math.random() * (lattice.numNodes() - 1));
+            int[] node = lattice.space().toIndex(id);
+            if (i % 100 == 0) {
+                lattice.putProperty(node, property);
+            } else {
+                lattice.putData(node, 1);
+            }
+        }
+    }
+
+    /**
+     * Test method
+     */
+    private static void test21() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    21             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Creating two lattices with 1M elements");
+        System.out.println("");
+
+        // Create lattices
+        PredictiveProperty property = new PredictiveProperty("Property", Direction.UP);
+        Lattice<String, Integer> lattice1 = getLattice(6);
+        Lattice<String, Integer> lattice2 = getLattice(6);
+        populate(lattice1, property);
+        populate(lattice2, property);
+        
+        // Policy
+        JHPLConflictPolicy<Integer> policy = new JHPLConflictPolicy<Integer>() {
+            @Override
+            public Integer resolve(int[] node, Integer data, Integer other) {
+                return data + other;
+            }
+        };
+
+        System.out.println("Merging by replaying all stored nodes");
+        Lattice<String, Integer> lattice3 = getLattice(6);
+        lattice3.mergeFrom(lattice1);
+        long time = System.currentTimeMillis();
+        Iterator<int[]> iter = lattice2.listNodes();
+        while (iter.hasNext()) {
+            int[] node = iter.next();
+            Integer data = lattice2.getData(node);
+            if (data != null) {
+                Integer other = lattice3.getData(node);
+                lattice3.putData(node, other == null ? data : policy.resolve(node, other, data));
+            }
+            if (lattice2.hasProperty(node, property)) {
+                lattice3.putProperty(node, property);
+            }
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Time needed: "+ time);
+        
+        System.out.println("");
+        System.out.println("Merging with mergeFrom()");
+        time = System.currentTimeMillis();
+        lattice1.mergeFrom(lattice2, policy);
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Time needed: "+ time);
+        
+        System.out.println("");
+        System.out.println("Comparing results");
+        int differences = 0;
+        iter = lattice1.unsafe().listAllNodes();
+        while (iter.hasNext()) {
+            int[] node = iter.next();
+            Integer data1 = lattice1.getData(node);
+            Integer data3 = lattice3.getData(node);
+            if (lattice1.contains(node) != lattice3.contains(node) ||
+                lattice1.hasProperty(node, property) != lattice3.hasProperty(node, property) ||
+                (data1 == null ? data3 != null : !data1.equals(data3))) {
+                differences++;
+            }
+        }
+        System.out.println(" - Differences: "+ differences);
+    }
+}
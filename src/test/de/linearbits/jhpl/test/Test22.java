@@ -0,0 +1,117 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Iterator;
+
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.PredictiveProperty;
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+import de.linearbits.jhpl.search.LatticeSearch;
+import de.linearbits.jhpl.search.MonotonicPredicate;
+import de.linearbits.jhpl.search.SearchStrategy;
+
+/**
+ * Test class
+ * @author Fabian Prasser
+ *
+ */
+public class Test22 {
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test22();
+    }
+
+    /**
+     * Returns a lattice of size 10^dimensions
+     * @param dimensions
+     * @return
+     */
+    private static Lattice<String, Integer> getLattice(int dimensions) {
+        String[][] elements = new String[dimensions][];
+        for (int i=0; i<dimensions; i++) {
+            elements[i] = new String[]{"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+        }
+        return new Lattice<String, Integer>(elements);
+    }
+
+    /**
+     * Returns whether the predicate holds for the given node, without computational costs
+     * @param node
+     * @return
+     */
+    private static boolean holds(int[] node) {
+        int sum = 0;
+        for (int i = 0; i < node.length; i++) {
+            sum += node[i] * (i + 1);
+        }
+        return sum >= 60;
+    }
+
+    /**
+     * Test method
+     */
+    private static void test22() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    22             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Searching lattices with 100k elements");
+
+        // A monotonic predicate with some computational costs
+        MonotonicPredicate predicate = new MonotonicPredicate() {
+            @Override
+            public boolean evaluate(int[] node) {
+                double value = 0d;
+                for (int i = 0; i < 10000; i++) {
+                    value += Math.sqrt(i);
+                }
+                return value > 0d && holds(node);
+            }
+        };
+
+        for (SearchStrategy strategy : SearchStrategy.values()) {
+            for (int parallelism : new int[]{1, 4}) {
+
+                Lattice<String, Integer> lattice = getLattice(5);
+                PredictiveProperty positive = new PredictiveProperty("Positive", Direction.UP);
+                PredictiveProperty negative = new PredictiveProperty("Negative", Direction.DOWN);
+                LatticeSearch search = new LatticeSearch(lattice, predicate, positive, negative, parallelism);
+
+                System.out.println("");
+                System.out.println("Strategy: " + strategy + ", parallelism: " + parallelism);
+                long time = System.currentTimeMillis();
+                search.search(strategy);
+                time = System.currentTimeMillis() - time;
+                System.out.println(" - Evaluations: " + search.getEvaluations());
+                System.out.println(" - Time needed: " + time);
+
+                // Each node must be classified according to the predicate
+                int differences = 0;
+                Iterator<int[]> iter = lattice.unsafe().listAllNodes();
+                while (iter.hasNext()) {
+                    int[] node = iter.next();
+                    boolean holds = holds(node);
+                    differences += lattice.hasProperty(node, positive) == holds ? 0 : 1;
+                    differences += lattice.hasProperty(node, negative) == !holds ? 0 : 1;
+                }
+                Util.check("Differences", differences);
+            }
+        }
+    }
+}
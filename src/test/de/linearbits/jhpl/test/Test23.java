@@ -0,0 +1,120 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.PredictiveProperty;
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+
+/**
+ * Test class
+ * @author Fabian Prasser
+ *
+ */
+public class Test23 {
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test23();
+    }
+
+    /**
+     * Returns a lattice of size 10^dimensions
+     * @param dimensions
+     * @return
+     */
+    private static Lattice<String, Integer> getLattice(int dimensions) {
+        String[][] elements = new String[dimensions][];
+        for (int i=0; i<dimensions; i++) {
+            elements[i] = new String[]{"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+        }
+        return new Lattice<String, Integer>(elements);
+    }
+
+    /**
+     * Test method
+     */
+    private static void test23() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    23             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Creating lattice with 1M elements");
+        System.out.println("");
+
+        // Create lattice
+        Lattice<String, Integer> lattice = getLattice(6);
+        PredictiveProperty property = new PredictiveProperty("Property", Direction.UP);
+        Random random = new Random(0);
+
+        System.out.println("Storing property for 300 nodes");
+        for (int i = 0; i < 300; i++) {
+            int[] node = new int[6];
+            for (int j = 0; j < node.length; j++) {
+                node[j] = random.nextInt(6);
+            }
+            lattice.putProperty(node, property);
+        }
+
+        int level = 20;
+        System.out.println("");
+        System.out.println("Counting nodes on level " + level);
+        long total = 0;
+        long without = 0;
+        Iterator<int[]> iterator = lattice.unsafe().listAllNodes(level);
+        while (iterator.hasNext()) {
+            total++;
+            if (!lattice.hasProperty(iterator.next(), property)) {
+                without++;
+            }
+        }
+        System.out.println(" - Nodes: " + total);
+        System.out.println(" - Nodes without property: " + without);
+
+        System.out.println("");
+        System.out.println("Sampling 1000 nodes without property with rejection sampling");
+        long time = System.currentTimeMillis();
+        int samples = 0;
+        long draws = 0;
+        while (samples < 1000) {
+            int[] node = lattice.space().toIndex((long) (random.nextDouble() * lattice.numNodes()));
+            draws++;
+            if (lattice.nodes().getLevel(node) == level && !lattice.hasProperty(node, property)) {
+                samples++;
+            }
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Draws: " + draws);
+        System.out.println(" - Time needed: " + time);
+
+        System.out.println("");
+        System.out.println("Sampling 1000 nodes without property with subtree counts");
+        time = System.currentTimeMillis();
+        samples = 0;
+        iterator = lattice.sampleWithoutProperty(property, level, 1000, random);
+        while (iterator.hasNext()) {
+            iterator.next();
+            samples++;
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Samples: " + samples);
+        System.out.println(" - Time needed: " + time);
+    }
+}
@@ -0,0 +1,138 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Iterator;
+
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.PredictiveProperty;
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+
+/**
+ * Test class
+ * @author Fabian Prasser
+ *
+ */
+public class Test24 {
+
+    /**
+     * Main
+     * @param args
+     * @throws InterruptedException 
+     */
+    public static void main(String[] args) throws InterruptedException {
+        test24();
+    }
+
+    /**
+     * Returns a lattice of size 10^dimensions
+     * @param dimensions
+     * @return
+     */
+    private static Lattice<String, Integer> getLattice(int dimensions) {
+        String[][] elements = new String[dimensions][];
+        for (int i=0; i<dimensions; i++) {
+            elements[i] = new String[]{"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+        }
+        return new Lattice<String, Integer>(elements);
+    }
+
+    /**
+     * Counts all nodes with the given property
+     * @param lattice
+     * @param property
+     * @return
+     */
+    private static int count(Lattice<String, Integer> lattice, PredictiveProperty property) {
+        Iterator<int[]> iter = lattice.unsafe().listAllNodes();
+        int total = 0;
+        for (int[] node = iter.next(); node != null; node = iter.next()) {
+            if (lattice.hasProperty(node, property)) {
+                total++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Test method
+     * @throws InterruptedException 
+     */
+    private static void test24() throws InterruptedException {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    24             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Creating lattice with 1M elements");
+        System.out.println("");
+
+        // Create lattice
+        final Lattice<String, Integer> lattice = getLattice(6);
+        final PredictiveProperty property = new PredictiveProperty("Property", Direction.UP);
+
+        System.out.println("Storing property for all nodes on level 27");
+        long time = System.currentTimeMillis();
+        Iterator<int[]> iter = lattice.unsafe().listAllNodes(27);
+        int count = 0;
+        for (int[] node = iter.next(); node != null; node = iter.next()) {
+            lattice.putProperty(node, property);
+            count++;
+        }
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Nodes: "+ count);
+        System.out.println(" - Time needed: "+ time);
+        System.out.println(" - Memory: "+ lattice.getByteSize());
+        final int expected = count(lattice, property);
+
+        System.out.println("");
+        System.out.println("Freezing lattice");
+        time = System.currentTimeMillis();
+        lattice.freeze();
+        time = System.currentTimeMillis() - time;
+        System.out.println(" - Time needed: "+ time);
+        System.out.println(" - Memory: "+ lattice.getByteSize());
+
+        System.out.println("");
+        System.out.println("Checking all nodes with 4 threads");
+        time = System.currentTimeMillis();
+        final int[] totals = new int[4];
+        Thread[] threads = new Thread[totals.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    totals[index] = count(lattice, property);
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        time = System.currentTimeMillis() - time;
+        for (int i = 0; i < totals.length; i++) {
+            System.out.println(" - Nodes with property (thread " + i + "): "+ totals[i] + (totals[i] == expected ? "" : " (expected " + expected + ")"));
+        }
+        System.out.println(" - Time needed: "+ time);
+
+        System.out.println("");
+        System.out.println("Modifying frozen lattice");
+        try {
+            lattice.putProperty(new int[] { 0, 0, 0, 0, 0, 0 }, property);
+            System.out.println(" - Modification accepted");
+        } catch (IllegalStateException e) {
+            System.out.println(" - Modification rejected: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.PredictiveProperty;
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+
+/**
+ * Test class for lattices with wide dimensions, in which trie pages are sparse
+ * @author Fabian Prasser
+ *
+ */
+public class Test26 {
+
+    /** Heights of the lattice */
+    private static final int[] HEIGHTS = { 5, 200, 300 };
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test26();
+    }
+
+    /**
+     * Returns a lattice with the given heights
+     * @param heights
+     * @return
+     */
+    private static Lattice<Integer, Integer> getLattice(int[] heights) {
+        Integer[][] elements = new Integer[heights.length][];
+        for (int i = 0; i < heights.length; i++) {
+            elements[i] = new Integer[heights[i]];
+            for (int j = 0; j < heights[i]; j++) {
+                elements[i][j] = j;
+            }
+        }
+        return new Lattice<Integer, Integer>(elements);
+    }
+
+    /**
+     * Compares the lattice with the brute-force state. Returns the number of differences.
+     * @param lattice
+     * @param up
+     * @param down
+     * @param puts
+     * @param stored
+     * @return
+     */
+    private static int check(Lattice<Integer, Integer> lattice, PredictiveProperty up, PredictiveProperty down,
+                             boolean[][] puts, boolean[] stored) {
+
+        // Brute force: a node has a property, if it or one of its predecessors (successors) has it
+        int size = stored.length;
+        boolean[] hasUp = new boolean[size];
+        boolean[] hasDown = new boolean[size];
+        for (int id = 0; id < size; id++) {
+            hasUp[id] = puts[0][id];
+            int[] node = lattice.space().toIndex(id);
+            for (int i = 0; i < node.length && !hasUp[id]; i++) {
+                if (node[i] > 0) {
+                    node[i]--;
+                    hasUp[id] = hasUp[(int) lattice.space().toId(node)];
+                    node[i]++;
+                }
+            }
+        }
+        for (int id = size - 1; id >= 0; id--) {
+            hasDown[id] = puts[1][id];
+            int[] node = lattice.space().toIndex(id);
+            for (int i = 0; i < node.length && !hasDown[id]; i++) {
+                if (node[i] < HEIGHTS[i] - 1) {
+                    node[i]++;
+                    hasDown[id] = hasDown[(int) lattice.space().toId(node)];
+                    node[i]--;
+                }
+            }
+        }
+
+        // Properties and stored nodes
+        int differences = 0;
+        for (int id = 0; id < size; id++) {
+            int[] node = lattice.space().toIndex(id);
+            differences += lattice.hasProperty(node, up) == hasUp[id] ? 0 : 1;
+            differences += lattice.hasProperty(node, down) == hasDown[id] ? 0 : 1;
+            differences += lattice.contains(node) == stored[id] ? 0 : 1;
+        }
+
+        // Listed nodes
+        boolean[] listed = new boolean[size];
+        Iterator<int[]> iter = lattice.listNodes();
+        while (iter.hasNext()) {
+            int id = (int) lattice.space().toId(iter.next());
+            differences += listed[id] || !stored[id] ? 1 : 0;
+            listed[id] = true;
+        }
+        for (int id = 0; id < size; id++) {
+            differences += stored[id] && !listed[id] ? 1 : 0;
+        }
+        return differences;
+    }
+
+    /**
+     * Returns the size of the frontier of the given property
+     * @param lattice
+     * @param property
+     * @return
+     */
+    private static int getFrontierSize(Lattice<Integer, Integer> lattice, PredictiveProperty property) {
+        int count = 0;
+        LongIterator iter = lattice.listFrontier(property);
+        while (iter.hasNext()) {
+            iter.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Randomly stores properties and data. Most properties are stored for nodes close to the given levels,
+     * which results in large frontiers, from which nodes are cleared by later nodes.
+     * @param lattice
+     * @param up
+     * @param down
+     * @param puts
+     * @param stored
+     * @param random
+     * @param count
+     */
+    private static void populate(Lattice<Integer, Integer> lattice, PredictiveProperty up, PredictiveProperty down,
+                                 boolean[][] puts, boolean[] stored, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            int[] node = new int[HEIGHTS.length];
+            int type = random.nextInt(5);
+            int level = type == 0 ? 300 : type == 1 ? 200 : -1;
+            do {
+                for (int j = 0; j < node.length; j++) {
+                    node[j] = random.nextInt(HEIGHTS[j]);
+                }
+            } while (level != -1 && Math.abs(lattice.nodes().getLevel(node) - level) > 2);
+            int id = (int) lattice.space().toId(node);
+            if (type == 0) {
+                lattice.putProperty(node, up);
+                puts[0][id] = true;
+            } else if (type == 1) {
+                lattice.putProperty(node, down);
+                puts[1][id] = true;
+            } else {
+                lattice.putData(node, i);
+            }
+            stored[id] = true;
+        }
+    }
+
+    /**
+     * Randomly stores properties and data for nodes, whose values in the last dimension are at the boundaries
+     * of the words of bitmaps
+     * @param lattice
+     * @param up
+     * @param down
+     * @param puts
+     * @param stored
+     * @param random
+     * @param count
+     */
+    private static void populateBoundaries(Lattice<Integer, Integer> lattice, PredictiveProperty up, PredictiveProperty down,
+                                           boolean[][] puts, boolean[] stored, Random random, int count) {
+        int last = HEIGHTS.length - 1;
+        int[] values = { 0, 1, 31, 32, 33, 63, 64, 95, 96, 127, 128, 255, 256, 287, 288, HEIGHTS[last] - 1 };
+        for (int i = 0; i < count; i++) {
+            int[] node = new int[HEIGHTS.length];
+            for (int j = 0; j < last; j++) {
+                node[j] = random.nextInt(HEIGHTS[j]);
+            }
+            node[last] = values[random.nextInt(values.length)];
+            int id = (int) lattice.space().toId(node);
+            int type = random.nextInt(4);
+            if (type == 0) {
+                lattice.putProperty(node, up);
+                puts[0][id] = true;
+            } else if (type == 1) {
+                lattice.putProperty(node, down);
+                puts[1][id] = true;
+            } else {
+                lattice.putData(node, i);
+            }
+            stored[id] = true;
+        }
+    }
+
+    /**
+     * Test method
+     */
+    private static void test26() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    26             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Creating lattice with 5x200x300 elements");
+
+        // Create lattice
+        Lattice<Integer, Integer> lattice = getLattice(HEIGHTS);
+        PredictiveProperty up = new PredictiveProperty("Up", Direction.UP);
+        PredictiveProperty down = new PredictiveProperty("Down", Direction.DOWN);
+        int size = (int) lattice.numNodes();
+        boolean[][] puts = new boolean[2][size];
+        boolean[] stored = new boolean[size];
+        Random random = new Random(0);
+
+        System.out.println("");
+        System.out.println("Randomly storing properties and data for 5000 nodes");
+        populate(lattice, up, down, puts, stored, random, 5000);
+        System.out.println(" - Frontier sizes: " + getFrontierSize(lattice, up) + ", " + getFrontierSize(lattice, down));
+        Util.check("Differences", check(lattice, up, down, puts, stored));
+
+        System.out.println("");
+        System.out.println("Compacting lattice");
+        lattice.compactify();
+        Util.check("Differences", check(lattice, up, down, puts, stored));
+
+        System.out.println("");
+        System.out.println("Randomly storing properties and data for 5000 more nodes");
+        populate(lattice, up, down, puts, stored, random, 5000);
+        System.out.println(" - Frontier sizes: " + getFrontierSize(lattice, up) + ", " + getFrontierSize(lattice, down));
+        Util.check("Differences", check(lattice, up, down, puts, stored));
+
+        System.out.println("");
+        System.out.println("Compacting lattice");
+        lattice.compactify();
+        Util.check("Differences", check(lattice, up, down, puts, stored));
+
+        System.out.println("");
+        System.out.println("Creating lattice with 5x200x300 elements");
+        lattice = getLattice(HEIGHTS);
+        puts = new boolean[2][size];
+        stored = new boolean[size];
+
+        System.out.println("");
+        System.out.println("Randomly storing properties and data for 3000 nodes at boundaries of words in leaf pages");
+        populateBoundaries(lattice, up, down, puts, stored, random, 3000);
+        Util.check("Differences", check(lattice, up, down, puts, stored));
+
+        System.out.println("");
+        System.out.println("Compacting lattice");
+        lattice.compactify();
+        Util.check("Differences", check(lattice, up, down, puts, stored));
+    }
+}
@@ -0,0 +1,221 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Random;
+
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.PredictiveProperty;
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+
+/**
+ * Test class for powerset lattices, in which all dimensions have a height of two
+ * @author Fabian Prasser
+ *
+ */
+public class Test28 {
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test28();
+    }
+
+    /**
+     * Returns a lattice with the given number of dimensions and the given height
+     * @param dimensions
+     * @param height
+     * @return
+     */
+    private static Lattice<Integer, Integer> getLattice(int dimensions, int height) {
+        Integer[][] elements = new Integer[dimensions][height];
+        for (int i = 0; i < dimensions; i++) {
+            for (int j = 0; j < height; j++) {
+                elements[i][j] = j;
+            }
+        }
+        return new Lattice<Integer, Integer>(elements);
+    }
+
+    /**
+     * Compares the neighbors of the given node in the powerset with the neighbors of the according node in the
+     * lattice with three values per dimension. Returns the number of differences.
+     * @param powerset
+     * @param generic
+     * @param neighbors
+     * @param expected
+     * @param offset The value that is added to each dimension of the node in the powerset
+     * @return
+     */
+    private static int check(Lattice<Integer, Integer> powerset, Lattice<Integer, Integer> generic,
+                             LongIterator neighbors, LongIterator expected, int offset) {
+        int differences = 0;
+        while (expected.hasNext()) {
+            int[] node = generic.space().toIndex(expected.next());
+            for (int i = 0; i < node.length; i++) {
+                node[i] -= offset;
+            }
+            differences += neighbors.hasNext() && neighbors.next() == powerset.space().toId(node) ? 0 : 1;
+        }
+        differences += neighbors.hasNext() ? 1 : 0;
+        return differences;
+    }
+
+    /**
+     * Compares the lattice with the brute-force state. Returns the number of differences.
+     * @param lattice
+     * @param up
+     * @param down
+     * @param puts
+     * @return
+     */
+    private static int check(Lattice<Integer, Integer> lattice, PredictiveProperty up, PredictiveProperty down,
+                             boolean[][] puts) {
+
+        // Brute force: a node has a property, if it or one of its predecessors (successors) has it
+        int size = puts[0].length;
+        boolean[] hasUp = new boolean[size];
+        boolean[] hasDown = new boolean[size];
+        for (int id = 0; id < size; id++) {
+            hasUp[id] = puts[0][id];
+            int[] node = lattice.space().toIndex(id);
+            for (int i = 0; i < node.length && !hasUp[id]; i++) {
+                if (node[i] == 1) {
+                    node[i] = 0;
+                    hasUp[id] = hasUp[(int) lattice.space().toId(node)];
+                    node[i] = 1;
+                }
+            }
+        }
+        for (int id = size - 1; id >= 0; id--) {
+            hasDown[id] = puts[1][id];
+            int[] node = lattice.space().toIndex(id);
+            for (int i = 0; i < node.length && !hasDown[id]; i++) {
+                if (node[i] == 0) {
+                    node[i] = 1;
+                    hasDown[id] = hasDown[(int) lattice.space().toId(node)];
+                    node[i] = 0;
+                }
+            }
+        }
+
+        // Properties
+        int differences = 0;
+        for (int id = 0; id < size; id++) {
+            int[] node = lattice.space().toIndex(id);
+            differences += lattice.hasProperty(node, up) == hasUp[id] ? 0 : 1;
+            differences += lattice.hasProperty(node, down) == hasDown[id] ? 0 : 1;
+        }
+        return differences;
+    }
+
+    /**
+     * Returns the size of the frontier of the given property
+     * @param lattice
+     * @param property
+     * @return
+     */
+    private static int getFrontierSize(Lattice<Integer, Integer> lattice, PredictiveProperty property) {
+        int count = 0;
+        LongIterator iter = lattice.listFrontier(property);
+        while (iter.hasNext()) {
+            iter.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Randomly stores the given number of incomparable nodes on the given level
+     * @param lattice
+     * @param property
+     * @param puts
+     * @param random
+     * @param level
+     * @param count
+     */
+    private static void populate(Lattice<Integer, Integer> lattice, PredictiveProperty property, boolean[] puts,
+                                 Random random, int level, int count) {
+        while (count > 0) {
+            int id = random.nextInt(puts.length);
+            int[] node = lattice.space().toIndex(id);
+            if (!puts[id] && lattice.nodes().getLevel(node) == level) {
+                lattice.putProperty(node, property);
+                puts[id] = true;
+                count--;
+            }
+        }
+    }
+
+    /**
+     * Test method
+     */
+    private static void test28() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    28             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Comparing neighbors in a powerset with 12 dimensions to a lattice with 3 values per dimension");
+
+        // Predecessors of a node equal the predecessors of the same node in the lattice with three values.
+        // Successors of a node equal the successors of the node that is one higher in each dimension.
+        Lattice<Integer, Integer> powerset = getLattice(12, 2);
+        Lattice<Integer, Integer> generic = getLattice(12, 3);
+        int differences = 0;
+        for (long id = 0; id < powerset.numNodes(); id++) {
+            int[] node = powerset.space().toIndex(id);
+            differences += check(powerset, generic, powerset.nodes().listPredecessors(id),
+                                 generic.nodes().listPredecessors(generic.space().toId(node)), 0);
+            for (int i = 0; i < node.length; i++) {
+                node[i]++;
+            }
+            differences += check(powerset, generic, powerset.nodes().listSuccessors(id),
+                                 generic.nodes().listSuccessors(generic.space().toId(node)), 1);
+        }
+        Util.check("Differences", differences);
+
+        System.out.println("");
+        System.out.println("Creating powerset with 18 dimensions");
+        Lattice<Integer, Integer> lattice = getLattice(18, 2);
+        PredictiveProperty up = new PredictiveProperty("Up", Direction.UP);
+        PredictiveProperty down = new PredictiveProperty("Down", Direction.DOWN);
+        boolean[][] puts = new boolean[2][(int) lattice.numNodes()];
+        Random random = new Random(0);
+
+        System.out.println("");
+        System.out.println("Storing properties for 16000 incomparable nodes");
+        populate(lattice, up, puts[0], random, 9, 16000);
+        populate(lattice, down, puts[1], random, 9, 16000);
+        System.out.println(" - Frontier sizes: " + getFrontierSize(lattice, up) + ", " + getFrontierSize(lattice, down));
+        Util.check("Differences", check(lattice, up, down, puts));
+
+        System.out.println("");
+        System.out.println("Storing properties for 1000 more incomparable nodes");
+        populate(lattice, up, puts[0], random, 9, 1000);
+        populate(lattice, down, puts[1], random, 9, 1000);
+        System.out.println(" - Frontier sizes: " + getFrontierSize(lattice, up) + ", " + getFrontierSize(lattice, down));
+        Util.check("Differences", check(lattice, up, down, puts));
+
+        System.out.println("");
+        System.out.println("Storing properties for nodes that imply most nodes and compacting the lattice");
+        populate(lattice, up, puts[0], random, 1, 1);
+        populate(lattice, down, puts[1], random, 17, 1);
+        lattice.compactify();
+        System.out.println(" - Frontier sizes: " + getFrontierSize(lattice, up) + ", " + getFrontierSize(lattice, down));
+        Util.check("Differences", check(lattice, up, down, puts));
+    }
+}
@@ -0,0 +1,148 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.PredictiveProperty;
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+
+/**
+ * Test class for lattices with trivial dimensions, which are removed from tries
+ * @author Fabian Prasser
+ *
+ */
+public class Test29 {
+
+    /** Heights of the lattice with trivial dimensions */
+    private static final int[] HEIGHTS         = { 1, 6, 1, 7, 5, 1 };
+    /** Heights of the lattice without trivial dimensions */
+    private static final int[] HEIGHTS_REDUCED = { 6, 7, 5 };
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test29();
+    }
+
+    /**
+     * Returns a lattice with the given heights
+     * @param heights
+     * @return
+     */
+    private static Lattice<Integer, Integer> getLattice(int[] heights) {
+        Integer[][] elements = new Integer[heights.length][];
+        for (int i = 0; i < heights.length; i++) {
+            elements[i] = new Integer[heights[i]];
+            for (int j = 0; j < heights[i]; j++) {
+                elements[i][j] = j;
+            }
+        }
+        return new Lattice<Integer, Integer>(elements);
+    }
+
+    /**
+     * Compares both lattices. Returns the number of differences.
+     * @param lattice
+     * @param reduced
+     * @param properties
+     * @return
+     */
+    private static int check(Lattice<Integer, Integer> lattice, Lattice<Integer, Integer> reduced,
+                             PredictiveProperty[] properties) {
+
+        // Identifiers, properties and stored nodes
+        int differences = lattice.numNodes() == reduced.numNodes() ? 0 : 1;
+        for (long id = 0; id < reduced.numNodes(); id++) {
+            int[] node = lattice.space().toIndex(id);
+            int[] other = reduced.space().toIndex(id);
+            differences += lattice.space().toId(node) == id ? 0 : 1;
+            differences += node[1] == other[0] && node[3] == other[1] && node[4] == other[2] ? 0 : 1;
+            for (PredictiveProperty property : properties) {
+                differences += lattice.hasProperty(node, property) == reduced.hasProperty(other, property) ? 0 : 1;
+            }
+            differences += lattice.contains(node) == reduced.contains(other) ? 0 : 1;
+        }
+
+        // Frontiers in the same order
+        for (PredictiveProperty property : properties) {
+            LongIterator iter = lattice.listFrontier(property);
+            LongIterator iterReduced = reduced.listFrontier(property);
+            while (iterReduced.hasNext()) {
+                differences += iter.hasNext() && iter.next() == iterReduced.next() ? 0 : 1;
+            }
+            differences += iter.hasNext() ? 1 : 0;
+        }
+
+        // Stored nodes in the same order
+        Iterator<int[]> iter = lattice.listNodes();
+        Iterator<int[]> iterReduced = reduced.listNodes();
+        while (iterReduced.hasNext()) {
+            long id = reduced.space().toId(iterReduced.next());
+            differences += iter.hasNext() && lattice.space().toId(iter.next()) == id ? 0 : 1;
+        }
+        differences += iter.hasNext() ? 1 : 0;
+        return differences;
+    }
+
+    /**
+     * Test method
+     */
+    private static void test29() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    29             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Creating lattices with 1x6x1x7x5x1 and 6x7x5 elements");
+
+        // Create lattices
+        Lattice<Integer, Integer> lattice = getLattice(HEIGHTS);
+        Lattice<Integer, Integer> reduced = getLattice(HEIGHTS_REDUCED);
+        PredictiveProperty[] properties = { new PredictiveProperty("Up", Direction.UP),
+                                            new PredictiveProperty("Down", Direction.DOWN) };
+        Random random = new Random(0);
+
+        System.out.println("");
+        System.out.println("Randomly storing properties and data for 50 nodes");
+        for (int i = 0; i < 50; i++) {
+            long id = (long) (random.nextDouble() * reduced.numNodes());
+            int type = random.nextInt(3);
+            if (type < 2) {
+                lattice.putProperty(lattice.space().toIndex(id), properties[type]);
+                reduced.putProperty(reduced.space().toIndex(id), properties[type]);
+            } else {
+                lattice.putData(lattice.space().toIndex(id), i);
+                reduced.putData(reduced.space().toIndex(id), i);
+            }
+        }
+        Util.check("Differences", check(lattice, reduced, properties));
+
+        System.out.println("");
+        System.out.println("Compacting lattices");
+        lattice.compactify();
+        reduced.compactify();
+        Util.check("Differences", check(lattice, reduced, properties));
+
+        System.out.println("");
+        System.out.println("Freezing lattices");
+        lattice.freeze();
+        reduced.freeze();
+        Util.check("Differences", check(lattice, reduced, properties));
+    }
+}
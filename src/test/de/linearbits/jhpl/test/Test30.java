@@ -0,0 +1,226 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Arrays;
+
+import de.linearbits.jhpl.JHPLSpace;
+import de.linearbits.jhpl.Lattice;
+
+/**
+ * Test class for converting elements from the source space
+ * @author Fabian Prasser
+ *
+ */
+public class Test30 {
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test30();
+    }
+
+    /**
+     * Compares the conversions of all nodes with brute force. Returns the number of differences.
+     * @param lattice
+     * @param elements
+     * @param primitive Whether the source space consists of Integers or Longs
+     * @param integers Whether the source space consists of Integers
+     * @return
+     */
+    private static <T> int check(Lattice<T, Integer> lattice, T[][] elements, boolean primitive, boolean integers) {
+
+        JHPLSpace<T> space = lattice.space();
+        int dimensions = elements.length;
+        int size = (int) lattice.numNodes();
+        int differences = 0;
+
+        // Nodes from the source space. For duplicate elements, the last one is used.
+        T[][] nodes = Arrays.copyOf(elements, size);
+        int[] expectedIndices = new int[size * dimensions];
+        long[] expectedIds = new long[size];
+        for (int id = 0; id < size; id++) {
+            int[] index = space.toIndex(id);
+            nodes[id] = Arrays.copyOf(elements[0], dimensions);
+            for (int i = 0; i < dimensions; i++) {
+                nodes[id][i] = elements[i][index[i]];
+                index[i] = Arrays.asList(elements[i]).lastIndexOf(nodes[id][i]);
+            }
+            System.arraycopy(index, 0, expectedIndices, id * dimensions, dimensions);
+            expectedIds[id] = space.toId(index);
+        }
+
+        // Single nodes
+        int[] index = new int[dimensions];
+        for (int id = 0; id < size; id++) {
+            int[] expected = Arrays.copyOfRange(expectedIndices, id * dimensions, (id + 1) * dimensions);
+            differences += Arrays.equals(space.toIndex(index, nodes[id]), expected) ? 0 : 1;
+            differences += space.toId(nodes[id]) == expectedIds[id] ? 0 : 1;
+            if (primitive) {
+                long[] values = new long[dimensions];
+                for (int i = 0; i < dimensions; i++) {
+                    values[i] = ((Number) nodes[id][i]).longValue();
+                }
+                differences += Arrays.equals(space.toIndexFromSource(index, values), expected) ? 0 : 1;
+                differences += space.toIdFromSource(values) == expectedIds[id] ? 0 : 1;
+            }
+            if (integers) {
+                int[] values = new int[dimensions];
+                for (int i = 0; i < dimensions; i++) {
+                    values[i] = (Integer) nodes[id][i];
+                }
+                differences += Arrays.equals(space.toIndexFromSource(index, values), expected) ? 0 : 1;
+                differences += space.toIdFromSource(values) == expectedIds[id] ? 0 : 1;
+            }
+        }
+
+        // Bulk conversions
+        int[] indices = new int[size * dimensions];
+        long[] ids = new long[size];
+        space.toIndices(nodes, indices);
+        space.toIds(nodes, ids);
+        differences += Arrays.equals(indices, expectedIndices) ? 0 : 1;
+        differences += Arrays.equals(ids, expectedIds) ? 0 : 1;
+        return differences;
+    }
+
+    /**
+     * Converts the given nodes in all possible ways. The last node contains an unknown element. Returns the
+     * number of conversions that did not throw an IllegalArgumentException.
+     * @param lattice
+     * @param nodes
+     * @return
+     */
+    private static <T> int checkUnknown(Lattice<T, Integer> lattice, T[][] nodes) {
+        JHPLSpace<T> space = lattice.space();
+        T[] node = nodes[nodes.length - 1];
+        int dimensions = node.length;
+        int accepted = 0;
+        try {
+            space.toId(node);
+            accepted++;
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            space.toIndex(new int[dimensions], node);
+            accepted++;
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            space.toIds(nodes, new long[nodes.length]);
+            accepted++;
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            space.toIndices(nodes, new int[nodes.length * dimensions]);
+            accepted++;
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        return accepted;
+    }
+
+    /**
+     * Converts the given primitive values, which contain an unknown element, in all possible ways. Returns 
+     * the number of conversions that did not throw an IllegalArgumentException.
+     * @param lattice
+     * @param values
+     * @return
+     */
+    private static int checkUnknown(Lattice<?, Integer> lattice, long[] values) {
+        JHPLSpace<?> space = lattice.space();
+        int accepted = 0;
+        try {
+            space.toIdFromSource(values);
+            accepted++;
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            space.toIndexFromSource(new int[values.length], values);
+            accepted++;
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        return accepted;
+    }
+
+    /**
+     * Test method
+     */
+    private static void test30() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    30             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Converting nodes with dense and sparse Integers and Longs");
+
+        // Dense and sparse dimensions with negative values, values out of the range of Integers and duplicates
+        Object[][] numbers = new Object[][] {
+                { 3, -5, 0, 10, -1, 7, 2, -4, 1, 9, -3, 4, 8, -2, 6, 5 },
+                { Integer.MAX_VALUE, -1000000, 0, 7, 123456789, 7, Integer.MIN_VALUE },
+                { 5000000009L, 5000000000L, 5000000001L, 5000000005L, 5000000003L, 5000000002L },
+                { Long.MIN_VALUE, -1L << 40, -1L, 3L, 1L << 40, Long.MAX_VALUE },
+                { 1, 2, 1, 3 } };
+        Lattice<Object, Integer> lattice = new Lattice<Object, Integer>(numbers);
+        Util.check("Differences", check(lattice, numbers, true, false));
+
+        System.out.println("");
+        System.out.println("Converting nodes with Integers");
+        Integer[][] integers = new Integer[][] {
+                { 3, -5, 0, 10, -1, 7, 2, -4, 1, 9, -3, 4, 8, -2, 6, 5 },
+                { Integer.MAX_VALUE, -1000000, 0, 7, 123456789, 7, Integer.MIN_VALUE },
+                { 1, 2, 1, 3 } };
+        Lattice<Integer, Integer> latticeIntegers = new Lattice<Integer, Integer>(integers);
+        Util.check("Differences", check(latticeIntegers, integers, true, true));
+
+        System.out.println("");
+        System.out.println("Converting nodes with colliding hash codes and duplicates");
+        String[][] strings = new String[][] {
+                { "Aa", "BB", "C", "AaAa", "BBBB", "AaBB", "BBAa" },
+                { "x", "y", "x", "z" },
+                new String[100] };
+        for (int i = 0; i < strings[2].length; i++) {
+            strings[2][i] = "s" + i;
+        }
+        Lattice<String, Integer> latticeStrings = new Lattice<String, Integer>(strings);
+        Util.check("Differences", check(latticeStrings, strings, false, false));
+
+        System.out.println("");
+        System.out.println("Converting nodes with unknown elements");
+        int accepted = 0;
+        accepted += checkUnknown(lattice, new Object[][] { { 3, 7, 5000000009L, 3L, 1 }, { 11, 7, 5000000009L, 3L, 1 } });
+        accepted += checkUnknown(lattice, new Object[][] { { 3, 7, 5000000009L, 3L, 1 }, { 3, 8, 5000000009L, 3L, 1 } });
+        accepted += checkUnknown(lattice, new Object[][] { { 3, 7, 5000000009L, 3L, 1 }, { 3, 7, 5000000004L, 3L, 1 } });
+        accepted += checkUnknown(lattice, new Object[][] { { 3, 7, 5000000009L, 3L, 1 }, { 3, 7, 5000000009L, 4L, 1 } });
+        accepted += checkUnknown(lattice, new Object[][] { { 3, 7, 5000000009L, 3L, 1 }, { 3L, 7, 5000000009L, 3L, 1 } });
+        accepted += checkUnknown(lattice, new Object[][] { { 3, 7, 5000000009L, 3L, 1 }, { 3, 7, 5000000009L, 3, 1 } });
+        accepted += checkUnknown(lattice, new long[] { 11, 7, 5000000009L, 3L, 1 });
+        accepted += checkUnknown(lattice, new long[] { 3, 7 + (1L << 32), 5000000009L, 3L, 1 });
+        accepted += checkUnknown(lattice, new long[] { 3, 7, 5000000009L + (1L << 32), 3L, 1 });
+        accepted += checkUnknown(lattice, new long[] { 3, 7, 5000000009L, 2L, 1 });
+        accepted += checkUnknown(latticeIntegers, new long[] { 3 - (1L << 32), 7, 1 });
+        accepted += checkUnknown(latticeIntegers, new long[] { 3, 7, 1L << 32 });
+        accepted += checkUnknown(latticeStrings, new String[][] { { "Aa", "x", "s0" }, { "Ab", "x", "s0" } });
+        accepted += checkUnknown(latticeStrings, new String[][] { { "Aa", "x", "s0" }, { "Aa", "Aa", "s0" } });
+        accepted += checkUnknown(latticeStrings, new String[][] { { "Aa", "x", "s0" }, { "Aa", "x", "s100" } });
+        accepted += checkUnknown(latticeStrings, new long[] { 0, 0, 0 });
+        Util.check("Unknown elements accepted", accepted);
+    }
+}
@@ -0,0 +1,196 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.PredictiveProperty;
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+
+/**
+ * Test class for exporting and importing frontiers
+ * @author Fabian Prasser
+ *
+ */
+public class Test31 {
+
+    /** Heights of the lattice */
+    private static final int[] HEIGHTS = { 6, 7, 5, 4 };
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test31();
+    }
+
+    /**
+     * Returns a lattice with the given heights
+     * @param heights
+     * @return
+     */
+    private static Lattice<Integer, Integer> getLattice(int[] heights) {
+        Integer[][] elements = new Integer[heights.length][];
+        for (int i = 0; i < heights.length; i++) {
+            elements[i] = new Integer[heights[i]];
+            for (int j = 0; j < heights[i]; j++) {
+                elements[i][j] = j;
+            }
+        }
+        return new Lattice<Integer, Integer>(elements);
+    }
+
+    /**
+     * Returns the frontier of the given property
+     * @param lattice
+     * @param property
+     * @return
+     */
+    private static long[] getFrontier(Lattice<Integer, Integer> lattice, PredictiveProperty property) {
+        long[] result = new long[(int) lattice.numNodes()];
+        int size = 0;
+        LongIterator iter = lattice.listFrontier(property);
+        while (iter.hasNext()) {
+            result[size++] = iter.next();
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Returns the properties of all nodes
+     * @param lattice
+     * @param property
+     * @return
+     */
+    private static boolean[] getProperties(Lattice<Integer, Integer> lattice, PredictiveProperty property) {
+        boolean[] result = new boolean[(int) lattice.numNodes()];
+        for (int id = 0; id < result.length; id++) {
+            result[id] = lattice.hasProperty(lattice.space().toIndex(id), property);
+        }
+        return result;
+    }
+
+    /**
+     * Returns an iterator over the given identifiers
+     * @param identifiers
+     * @return
+     */
+    private static LongIterator iterator(final long[] identifiers) {
+        return new LongIterator() {
+
+            int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < identifiers.length;
+            }
+
+            @Override
+            public long next() {
+                return identifiers[index++];
+            }
+        };
+    }
+
+    /**
+     * Randomly stores the given property for the given number of nodes
+     * @param lattice
+     * @param property
+     * @param random
+     * @param count
+     */
+    private static void populate(Lattice<Integer, Integer> lattice, PredictiveProperty property, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            lattice.putProperty(lattice.space().toIndex((long) (random.nextDouble() * lattice.numNodes())), property);
+        }
+    }
+
+    /**
+     * Test method
+     */
+    private static void test31() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    31             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Creating lattice with 6x7x5x4 elements");
+
+        // Create lattice
+        Lattice<Integer, Integer> lattice = getLattice(HEIGHTS);
+        PredictiveProperty[] properties = { new PredictiveProperty("Up", Direction.UP),
+                                            new PredictiveProperty("Down", Direction.DOWN) };
+        Random random = new Random(0);
+        for (PredictiveProperty property : properties) {
+            populate(lattice, property, random, 20);
+        }
+
+        System.out.println("");
+        System.out.println("Importing frontiers into a new lattice");
+        Lattice<Integer, Integer> target = getLattice(HEIGHTS);
+        int differences = 0;
+        for (PredictiveProperty property : properties) {
+            long[] frontier = getFrontier(lattice, property);
+            System.out.println(" - Frontier size (" + property.getLabel() + "): " + frontier.length);
+            target.importFrontier(property, iterator(frontier));
+            differences += Arrays.equals(getFrontier(target, property), frontier) ? 0 : 1;
+            boolean[] expected = getProperties(lattice, property);
+            boolean[] actual = getProperties(target, property);
+            for (int id = 0; id < expected.length; id++) {
+                differences += expected[id] == actual[id] ? 0 : 1;
+            }
+        }
+        Util.check("Differences", differences);
+
+        System.out.println("");
+        System.out.println("Importing frontiers into a lattice that already holds the properties");
+        target = getLattice(HEIGHTS);
+        differences = 0;
+        for (PredictiveProperty property : properties) {
+            populate(target, property, random, 20);
+            boolean[] existing = getProperties(target, property);
+            target.importFrontier(property, iterator(getFrontier(lattice, property)));
+            boolean[] expected = getProperties(lattice, property);
+            boolean[] actual = getProperties(target, property);
+            for (int id = 0; id < expected.length; id++) {
+                differences += (expected[id] || existing[id]) == actual[id] ? 0 : 1;
+            }
+        }
+        Util.check("Differences", differences);
+
+        System.out.println("");
+        System.out.println("Exporting and importing frontiers of properties that are not predictive in one direction");
+        int accepted = 0;
+        for (Direction direction : new Direction[] { Direction.BOTH, Direction.NONE }) {
+            PredictiveProperty property = new PredictiveProperty(direction.toString(), direction);
+            lattice.putProperty(new int[HEIGHTS.length], property);
+            try {
+                lattice.listFrontier(property);
+                accepted++;
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+            try {
+                lattice.importFrontier(property, iterator(new long[] { 0L }));
+                accepted++;
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        Util.check("Operations accepted", accepted);
+    }
+}
@@ -0,0 +1,185 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import de.linearbits.jhpl.JHPLQuery;
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+
+/**
+ * Test class for materializing nodes from identifiers
+ * @author Fabian Prasser
+ *
+ */
+public class Test32 {
+
+    /** Heights of the lattice, with a trivial dimension */
+    private static final int[] HEIGHTS = { 5, 1, 8, 6, 7 };
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test32();
+    }
+
+    /**
+     * Returns a lattice with the given heights
+     * @param heights
+     * @return
+     */
+    private static Lattice<Integer, Integer> getLattice(int[] heights) {
+        Integer[][] elements = new Integer[heights.length][];
+        for (int i = 0; i < heights.length; i++) {
+            elements[i] = new Integer[heights[i]];
+            for (int j = 0; j < heights[i]; j++) {
+                elements[i][j] = j;
+            }
+        }
+        return new Lattice<Integer, Integer>(elements);
+    }
+
+    /**
+     * Compares the lattice with the given nodes. Returns the number of differences.
+     * @param lattice
+     * @param stored
+     * @return
+     */
+    private static int check(Lattice<Integer, Integer> lattice, boolean[] stored) {
+
+        // Stored nodes
+        int differences = 0;
+        int count = 0;
+        for (int id = 0; id < stored.length; id++) {
+            differences += lattice.contains(lattice.space().toIndex(id)) == stored[id] ? 0 : 1;
+            count += stored[id] ? 1 : 0;
+        }
+        differences += lattice.numNodes(JHPLQuery.stored()) == count ? 0 : 1;
+
+        // Listed nodes in ascending order
+        long previous = -1;
+        Iterator<int[]> iter = lattice.listNodes();
+        while (iter.hasNext()) {
+            long id = lattice.space().toId(iter.next());
+            differences += id > previous && stored[(int) id] ? 0 : 1;
+            previous = id;
+            count--;
+        }
+        differences += count == 0 ? 0 : 1;
+        return differences;
+    }
+
+    /**
+     * Returns an iterator over the given identifiers
+     * @param identifiers
+     * @return
+     */
+    private static LongIterator iterator(final long[] identifiers) {
+        return new LongIterator() {
+
+            int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < identifiers.length;
+            }
+
+            @Override
+            public long next() {
+                return identifiers[index++];
+            }
+        };
+    }
+
+    /**
+     * Materializes the given identifiers and marks them as stored
+     * @param lattice
+     * @param identifiers
+     * @param stored
+     */
+    private static void materialize(Lattice<Integer, Integer> lattice, long[] identifiers, boolean[] stored) {
+        lattice.unsafe().materialize(iterator(identifiers));
+        for (long id : identifiers) {
+            stored[(int) id] = true;
+        }
+    }
+
+    /**
+     * Test method
+     */
+    private static void test32() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    32             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Creating lattice with 5x1x8x6x7 elements");
+
+        Lattice<Integer, Integer> lattice = getLattice(HEIGHTS);
+        int size = (int) lattice.numNodes();
+        boolean[] stored = new boolean[size];
+        Random random = new Random(0);
+
+        System.out.println("");
+        System.out.println("Materializing nothing");
+        materialize(lattice, new long[0], stored);
+        Util.check("Differences", check(lattice, stored));
+
+        System.out.println("");
+        System.out.println("Materializing 200 sorted identifiers");
+        long[] identifiers = new long[200];
+        for (int i = 0, id = 0; i < identifiers.length; id++) {
+            if (random.nextInt(size - id) < identifiers.length - i) {
+                identifiers[i++] = id;
+            }
+        }
+        materialize(lattice, identifiers, stored);
+        Util.check("Differences", check(lattice, stored));
+
+        System.out.println("");
+        System.out.println("Materializing 500 unsorted identifiers with duplicates");
+        identifiers = new long[500];
+        for (int i = 0; i < identifiers.length; i++) {
+            identifiers[i] = random.nextInt(size);
+        }
+        materialize(lattice, identifiers, stored);
+        Util.check("Differences", check(lattice, stored));
+
+        System.out.println("");
+        System.out.println("Materializing all identifiers in descending order");
+        identifiers = new long[size];
+        for (int i = 0; i < identifiers.length; i++) {
+            identifiers[i] = size - 1 - i;
+        }
+        materialize(lattice, identifiers, stored);
+        Util.check("Differences", check(lattice, stored));
+        Util.check("Nodes not stored", lattice.numNodes() - lattice.numNodes(JHPLQuery.stored()));
+
+        System.out.println("");
+        System.out.println("Materializing invalid identifiers");
+        int accepted = 0;
+        for (long id : new long[] { -1L, size }) {
+            try {
+                lattice.unsafe().materialize(iterator(new long[] { 0L, id }));
+                accepted++;
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        Util.check("Identifiers accepted", accepted);
+    }
+}
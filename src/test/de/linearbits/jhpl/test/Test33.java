@@ -0,0 +1,130 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+
+/**
+ * Test class for symmetric chain decompositions
+ * @author Fabian Prasser
+ *
+ */
+public class Test33 {
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test33();
+    }
+
+    /**
+     * Returns a lattice with the given heights
+     * @param heights
+     * @return
+     */
+    private static Lattice<Integer, Integer> getLattice(int[] heights) {
+        Integer[][] elements = new Integer[heights.length][];
+        for (int i = 0; i < heights.length; i++) {
+            elements[i] = new Integer[heights[i]];
+            for (int j = 0; j < heights[i]; j++) {
+                elements[i][j] = j;
+            }
+        }
+        return new Lattice<Integer, Integer>(elements);
+    }
+
+    /**
+     * Checks the chains of the given lattice. Returns the number of errors.
+     * @param lattice
+     * @return
+     */
+    private static int check(Lattice<Integer, Integer> lattice) {
+
+        int errors = 0;
+        int top = lattice.numLevels() - 1;
+        boolean[] visited = new boolean[(int) lattice.numNodes()];
+        int chains = 0;
+        Iterator<long[]> iter = lattice.nodes().listChains();
+        while (iter.hasNext()) {
+            long[] chain = iter.next();
+            chains++;
+
+            // Each node is contained in exactly one chain
+            for (long id : chain) {
+                errors += visited[(int) id] ? 1 : 0;
+                visited[(int) id] = true;
+            }
+
+            // Consecutive nodes are covering pairs
+            for (int i = 1; i < chain.length; i++) {
+                int[] lower = lattice.space().toIndex(chain[i - 1]);
+                int[] upper = lattice.space().toIndex(chain[i]);
+                errors += lattice.nodes().isParentChild(upper, lower) &&
+                          lattice.nodes().getLevel(upper) == lattice.nodes().getLevel(lower) + 1 ? 0 : 1;
+            }
+
+            // Chains are symmetric
+            int first = lattice.nodes().getLevel(chain[0]);
+            int last = lattice.nodes().getLevel(chain[chain.length - 1]);
+            errors += first + last == top ? 0 : 1;
+
+            // The first chain connects the bottom node with the top node
+            if (chains == 1) {
+                errors += chain[0] == 0 && chain[chain.length - 1] == lattice.numNodes() - 1 ? 0 : 1;
+            }
+        }
+
+        // All nodes are covered
+        for (boolean covered : visited) {
+            errors += covered ? 0 : 1;
+        }
+
+        // The number of chains equals the number of nodes on the middle level
+        int middle = 0;
+        LongIterator nodes = lattice.unsafe().listAllNodesAsIdentifiers(top / 2);
+        while (nodes.hasNext()) {
+            nodes.next();
+            middle++;
+        }
+        errors += chains == middle ? 0 : 1;
+        return errors;
+    }
+
+    /**
+     * Test method
+     */
+    private static void test33() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    33             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Checking symmetric chain decompositions");
+
+        int[][] shapes = new int[][] { { 1 }, { 5 }, { 1, 1 }, { 2, 2, 2, 2, 2 }, { 3, 4, 2 }, { 1, 5, 1, 3 },
+                                       { 4, 4, 4 }, { 2, 7, 3, 1, 2 }, { 10, 2, 6 }, { 3, 3, 3, 3, 3, 3 } };
+        int errors = 0;
+        for (int[] heights : shapes) {
+            int shapeErrors = check(getLattice(heights));
+            System.out.println(" - Heights " + Arrays.toString(heights) + ": " + shapeErrors + " errors");
+            errors += shapeErrors;
+        }
+        Util.check("Errors", errors);
+    }
+}
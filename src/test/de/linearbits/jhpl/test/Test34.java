@@ -0,0 +1,179 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import de.linearbits.jhpl.JHPLSpace;
+import de.linearbits.jhpl.Lattice;
+
+/**
+ * Test class for bulk conversions
+ * @author Fabian Prasser
+ *
+ */
+public class Test34 {
+
+    /** Number of ids converted per lattice */
+    private static final int SIZE     = 10000;
+    /** Value of entries that must not be written */
+    private static final int SENTINEL = -7;
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test34();
+    }
+
+    /**
+     * Returns a lattice with the given heights
+     * @param heights
+     * @return
+     */
+    private static Lattice<Integer, Integer> getLattice(int[] heights) {
+        Integer[][] elements = new Integer[heights.length][];
+        for (int i = 0; i < heights.length; i++) {
+            elements[i] = new Integer[heights[i]];
+            for (int j = 0; j < heights[i]; j++) {
+                elements[i][j] = j;
+            }
+        }
+        return new Lattice<Integer, Integer>(elements);
+    }
+
+    /**
+     * Compares the bulk conversions of the given lattice with the conversions of single nodes. Returns the
+     * number of differences.
+     * @param lattice
+     * @param random
+     * @return
+     */
+    private static int check(Lattice<Integer, Integer> lattice, Random random) {
+
+        // Random ids, including the first and the last node, followed by ids that must not be converted
+        JHPLSpace<Integer> space = lattice.space();
+        int dimensions = lattice.numDimensions();
+        int count = SIZE - 10;
+        long[] ids = new long[SIZE];
+        for (int i = 0; i < count; i++) {
+            ids[i] = (long) (random.nextDouble() * lattice.numNodes());
+        }
+        ids[0] = 0;
+        ids[count - 1] = lattice.numNodes() - 1;
+        Arrays.fill(ids, count, SIZE, -1L);
+
+        // Convert
+        int[] levels = new int[SIZE];
+        int[] indices = new int[SIZE * dimensions];
+        long[] converted = new long[SIZE];
+        Arrays.fill(levels, SENTINEL);
+        Arrays.fill(indices, SENTINEL);
+        Arrays.fill(converted, SENTINEL);
+        space.levels(ids, count, levels);
+        space.toIndices(ids, count, indices);
+        space.toIds(indices, count, converted);
+
+        // Compare
+        int differences = 0;
+        for (int i = 0; i < count; i++) {
+            int[] index = space.toIndex(ids[i]);
+            differences += levels[i] == lattice.nodes().getLevel(ids[i]) ? 0 : 1;
+            differences += Arrays.equals(Arrays.copyOfRange(indices, i * dimensions, (i + 1) * dimensions), index) ? 0 : 1;
+            differences += converted[i] == space.toId(index) ? 0 : 1;
+        }
+        for (int i = count; i < SIZE; i++) {
+            differences += levels[i] == SENTINEL && converted[i] == SENTINEL ? 0 : 1;
+        }
+        for (int i = count * dimensions; i < indices.length; i++) {
+            differences += indices[i] == SENTINEL ? 0 : 1;
+        }
+
+        // Without count
+        int[] all = new int[count];
+        space.levels(Arrays.copyOf(ids, count), all);
+        differences += Arrays.equals(all, Arrays.copyOf(levels, count)) ? 0 : 1;
+        return differences;
+    }
+
+    /**
+     * Performs invalid bulk conversions. Returns the number of conversions that did not throw an
+     * IllegalArgumentException.
+     * @param lattice
+     * @return
+     */
+    private static int checkInvalid(Lattice<Integer, Integer> lattice) {
+
+        JHPLSpace<Integer> space = lattice.space();
+        int dimensions = lattice.numDimensions();
+        long[][] ids = { new long[4], new long[4], new long[3], new long[] { 0, 1, lattice.numNodes() } };
+        int[] counts = { -1, 4, 4, 3 };
+        int[] sizes = { 4, 3, 4, 3 };
+        int accepted = 0;
+        for (int i = 0; i < ids.length; i++) {
+            try {
+                space.levels(ids[i], counts[i], new int[sizes[i]]);
+                accepted++;
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+            try {
+                space.toIndices(ids[i], counts[i], new int[sizes[i] * dimensions]);
+                accepted++;
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        int[][] flatNodes = { new int[4 * dimensions], new int[4 * dimensions], new int[4 * dimensions - 1] };
+        counts = new int[] { -1, 4, 4 };
+        sizes = new int[] { 4, 3, 4 };
+        for (int i = 0; i < flatNodes.length; i++) {
+            try {
+                space.toIds(flatNodes[i], counts[i], new long[sizes[i]]);
+                accepted++;
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Test method
+     */
+    private static void test34() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    34             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Comparing bulk conversions with conversions of single nodes");
+
+        int[][] shapes = new int[][] { { 7 }, { 3, 4, 5 }, { 2, 2, 2, 2, 2, 2, 2, 2 }, { 1, 6, 1, 9 },
+                                       { 100000, 1, 100000, 1000 }, { 65536, 65536, 65536 } };
+        Random random = new Random(0);
+        int differences = 0;
+        int accepted = 0;
+        for (int[] heights : shapes) {
+            Lattice<Integer, Integer> lattice = getLattice(heights);
+            int shapeDifferences = check(lattice, random);
+            System.out.println(" - Heights " + Arrays.toString(heights) + ": " + shapeDifferences + " differences");
+            differences += shapeDifferences;
+            accepted += checkInvalid(lattice);
+        }
+        Util.check("Differences", differences);
+        Util.check("Invalid conversions accepted", accepted);
+    }
+}
@@ -0,0 +1,223 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.PredictiveProperty;
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+
+/**
+ * Test class for compacting lattices with a layout of pages that is aligned to cache lines
+ * @author Fabian Prasser
+ *
+ */
+public class Test35 {
+
+    /** Heights of the lattice, with dense and sparse pages */
+    private static final int[] HEIGHTS = { 6, 40, 9, 35 };
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test35();
+    }
+
+    /**
+     * Returns a lattice with the given heights
+     * @param heights
+     * @return
+     */
+    private static Lattice<Integer, Integer> getLattice(int[] heights) {
+        Integer[][] elements = new Integer[heights.length][];
+        for (int i = 0; i < heights.length; i++) {
+            elements[i] = new Integer[heights[i]];
+            for (int j = 0; j < heights[i]; j++) {
+                elements[i][j] = j;
+            }
+        }
+        return new Lattice<Integer, Integer>(elements);
+    }
+
+    /**
+     * Compares the lattice with the brute-force state. Returns the number of differences.
+     * @param lattice
+     * @param properties
+     * @param puts
+     * @param stored
+     * @return
+     */
+    private static int check(Lattice<Integer, Integer> lattice, PredictiveProperty[] properties,
+                             boolean[][] puts, boolean[] stored) {
+
+        // Brute force: a node has a property, if it or one of its predecessors (successors) has it
+        int size = stored.length;
+        boolean[][] expected = new boolean[properties.length][size];
+        for (int p = 0; p < properties.length; p++) {
+            boolean up = properties[p].getDirection() == Direction.UP;
+            for (int j = 0; j < size; j++) {
+                int id = up ? j : size - 1 - j;
+                expected[p][id] = puts[p][id];
+                int[] node = lattice.space().toIndex(id);
+                for (int i = 0; i < node.length && !expected[p][id]; i++) {
+                    int value = node[i];
+                    node[i] += up ? -1 : 1;
+                    if (node[i] >= 0 && node[i] < HEIGHTS[i]) {
+                        expected[p][id] = expected[p][(int) lattice.space().toId(node)];
+                    }
+                    node[i] = value;
+                }
+            }
+        }
+
+        // Properties, stored nodes and frontiers
+        int differences = 0;
+        for (int id = 0; id < size; id++) {
+            int[] node = lattice.space().toIndex(id);
+            for (int p = 0; p < properties.length; p++) {
+                differences += lattice.hasProperty(node, properties[p]) == expected[p][id] ? 0 : 1;
+            }
+            differences += lattice.contains(node) == stored[id] ? 0 : 1;
+        }
+        for (int p = 0; p < properties.length; p++) {
+            LongIterator iter = lattice.listFrontier(properties[p]);
+            while (iter.hasNext()) {
+                long id = iter.next();
+                differences += puts[p][(int) id] ? 0 : 1;
+            }
+        }
+        Iterator<int[]> iter = lattice.listNodes();
+        int count = 0;
+        while (iter.hasNext()) {
+            differences += stored[(int) lattice.space().toId(iter.next())] ? 0 : 1;
+            count++;
+        }
+        for (boolean value : stored) {
+            count -= value ? 1 : 0;
+        }
+        differences += count == 0 ? 0 : 1;
+        return differences;
+    }
+
+    /**
+     * Returns the size of the frontier of the given property
+     * @param lattice
+     * @param property
+     * @return
+     */
+    private static int getFrontierSize(Lattice<Integer, Integer> lattice, PredictiveProperty property) {
+        int count = 0;
+        LongIterator iter = lattice.listFrontier(property);
+        while (iter.hasNext()) {
+            iter.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Randomly stores properties and data. Properties are stored for nodes close to the given levels, which 
+     * results in frontiers that are too large to be packed, so that queries traverse the tries.
+     * @param lattice
+     * @param properties
+     * @param puts
+     * @param stored
+     * @param random
+     * @param levels
+     * @param count
+     */
+    private static void populate(Lattice<Integer, Integer> lattice, PredictiveProperty[] properties,
+                                 boolean[][] puts, boolean[] stored, Random random, int[] levels, int count) {
+        for (int i = 0; i < count; i++) {
+            int type = random.nextInt(properties.length + 1);
+            int id;
+            int[] node;
+            do {
+                id = random.nextInt(stored.length);
+                node = lattice.space().toIndex(id);
+            } while (type < properties.length && Math.abs(lattice.nodes().getLevel(node) - levels[type]) > 1);
+            if (type < properties.length) {
+                lattice.putProperty(node, properties[type]);
+                puts[type][id] = true;
+            } else {
+                lattice.putData(node, i);
+            }
+            stored[id] = true;
+        }
+    }
+
+    /**
+     * Test method
+     */
+    private static void test35() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    35             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Creating lattice with 6x40x9x35 elements");
+
+        // Create lattice
+        Lattice<Integer, Integer> lattice = getLattice(HEIGHTS);
+        PredictiveProperty[] properties = { new PredictiveProperty("Up", Direction.UP),
+                                            new PredictiveProperty("Down", Direction.DOWN) };
+        int size = (int) lattice.numNodes();
+        boolean[][] puts = new boolean[properties.length][size];
+        boolean[] stored = new boolean[size];
+        int[] levels = { 55, 31 };
+        Random random = new Random(0);
+
+        System.out.println("");
+        System.out.println("Randomly storing properties and data for 2000 nodes");
+        populate(lattice, properties, puts, stored, random, levels, 2000);
+        System.out.println(" - Frontier sizes: " + getFrontierSize(lattice, properties[0]) + ", " + getFrontierSize(lattice, properties[1]));
+        System.out.println(" - Memory: " + Util.formatByteCount(lattice.getByteSize(), true));
+        Util.check("Differences", check(lattice, properties, puts, stored));
+
+        System.out.println("");
+        System.out.println("Compacting lattice with aligned layout");
+        lattice.compactify(true);
+        System.out.println(" - Memory: " + Util.formatByteCount(lattice.getByteSize(), true));
+        Util.check("Differences", check(lattice, properties, puts, stored));
+
+        System.out.println("");
+        System.out.println("Randomly storing properties and data for 2000 more nodes");
+        populate(lattice, properties, puts, stored, random, levels, 2000);
+        System.out.println(" - Frontier sizes: " + getFrontierSize(lattice, properties[0]) + ", " + getFrontierSize(lattice, properties[1]));
+        System.out.println(" - Memory: " + Util.formatByteCount(lattice.getByteSize(), true));
+        Util.check("Differences", check(lattice, properties, puts, stored));
+
+        System.out.println("");
+        System.out.println("Compacting lattice with aligned layout twice");
+        lattice.compactify(true);
+        lattice.compactify(true);
+        System.out.println(" - Memory: " + Util.formatByteCount(lattice.getByteSize(), true));
+        Util.check("Differences", check(lattice, properties, puts, stored));
+
+        System.out.println("");
+        System.out.println("Storing a property that unshares the tries");
+        int[] node = new int[HEIGHTS.length];
+        for (PredictiveProperty property : properties) {
+            lattice.putProperty(node, property);
+            int id = (int) lattice.space().toId(node);
+            puts[property.getDirection() == Direction.UP ? 0 : 1][id] = true;
+            stored[id] = true;
+        }
+        Util.check("Differences", check(lattice, properties, puts, stored));
+    }
+}
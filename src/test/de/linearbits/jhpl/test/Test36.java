@@ -0,0 +1,197 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+import java.util.Random;
+
+import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.PredictiveProperty;
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+
+/**
+ * Test class for large frontiers, which are queried with bounds for each value of the first dimension
+ * @author Fabian Prasser
+ *
+ */
+public class Test36 {
+
+    /** Heights of the lattice */
+    private static final int[] HEIGHTS = { 24, 12, 12, 12 };
+
+    /**
+     * Main
+     * @param args
+     */
+    public static void main(String[] args) {
+        test36();
+    }
+
+    /**
+     * Returns a lattice with the given heights
+     * @param heights
+     * @return
+     */
+    private static Lattice<Integer, Integer> getLattice(int[] heights) {
+        Integer[][] elements = new Integer[heights.length][];
+        for (int i = 0; i < heights.length; i++) {
+            elements[i] = new Integer[heights[i]];
+            for (int j = 0; j < heights[i]; j++) {
+                elements[i][j] = j;
+            }
+        }
+        return new Lattice<Integer, Integer>(elements);
+    }
+
+    /**
+     * Compares the lattice with the brute-force state. Returns the number of differences.
+     * @param lattice
+     * @param properties
+     * @param puts
+     * @return
+     */
+    private static int check(Lattice<Integer, Integer> lattice, PredictiveProperty[] properties, boolean[][] puts) {
+
+        // Brute force: a node has a property, if it or one of its predecessors (successors) has it
+        int size = puts[0].length;
+        boolean[][] expected = new boolean[properties.length][size];
+        for (int p = 0; p < properties.length; p++) {
+            boolean up = properties[p].getDirection() == Direction.UP;
+            for (int j = 0; j < size; j++) {
+                int id = up ? j : size - 1 - j;
+                expected[p][id] = puts[p][id];
+                int[] node = lattice.space().toIndex(id);
+                for (int i = 0; i < node.length && !expected[p][id]; i++) {
+                    int value = node[i];
+                    node[i] += up ? -1 : 1;
+                    if (node[i] >= 0 && node[i] < HEIGHTS[i]) {
+                        expected[p][id] = expected[p][(int) lattice.space().toId(node)];
+                    }
+                    node[i] = value;
+                }
+            }
+        }
+
+        // Properties
+        int differences = 0;
+        for (int id = 0; id < size; id++) {
+            int[] node = lattice.space().toIndex(id);
+            for (int p = 0; p < properties.length; p++) {
+                differences += lattice.hasProperty(node, properties[p]) == expected[p][id] ? 0 : 1;
+            }
+        }
+        return differences;
+    }
+
+    /**
+     * Returns the size of the frontier of the given property
+     * @param lattice
+     * @param property
+     * @return
+     */
+    private static int getFrontierSize(Lattice<Integer, Integer> lattice, PredictiveProperty property) {
+        int count = 0;
+        LongIterator iter = lattice.listFrontier(property);
+        while (iter.hasNext()) {
+            iter.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Randomly stores the properties for nodes on the given levels, whose first value is in the given range
+     * @param lattice
+     * @param properties
+     * @param puts
+     * @param random
+     * @param levels
+     * @param min
+     * @param max
+     * @param count
+     */
+    private static void populate(Lattice<Integer, Integer> lattice, PredictiveProperty[] properties, boolean[][] puts,
+                                 Random random, int[] levels, int min, int max, int count) {
+        for (int i = 0; i < count; i++) {
+            int type = i % properties.length;
+            int id;
+            int[] node;
+            do {
+                id = random.nextInt(puts[type].length);
+                node = lattice.space().toIndex(id);
+            } while (node[0] < min || node[0] > max || lattice.nodes().getLevel(node) != levels[type]);
+            lattice.putProperty(node, properties[type]);
+            puts[type][id] = true;
+        }
+    }
+
+    /**
+     * Stores the given property for the given node
+     * @param lattice
+     * @param properties
+     * @param puts
+     * @param type
+     * @param node
+     */
+    private static void put(Lattice<Integer, Integer> lattice, PredictiveProperty[] properties, boolean[][] puts,
+                            int type, int[] node) {
+        lattice.putProperty(node, properties[type]);
+        puts[type][(int) lattice.space().toId(node)] = true;
+    }
+
+    /**
+     * Test method
+     */
+    private static void test36() {
+
+        System.out.println("");
+        System.out.println("**************************");
+        System.out.println("* TEST    36             *");
+        System.out.println("**************************");
+        System.out.println("");
+        System.out.println("Creating lattice with 24x12x12x12 elements");
+
+        // Create lattice
+        Lattice<Integer, Integer> lattice = getLattice(HEIGHTS);
+        PredictiveProperty[] properties = { new PredictiveProperty("Up", Direction.UP),
+                                            new PredictiveProperty("Down", Direction.DOWN) };
+        boolean[][] puts = new boolean[properties.length][(int) lattice.numNodes()];
+        Random random = new Random(0);
+
+        System.out.println("");
+        System.out.println("Storing properties for nodes whose first value is between 8 and 15");
+        populate(lattice, properties, puts, random, new int[] { 24, 24 }, 8, 15, 2000);
+        System.out.println(" - Frontier sizes: " + getFrontierSize(lattice, properties[0]) + ", " + getFrontierSize(lattice, properties[1]));
+        Util.check("Differences", check(lattice, properties, puts));
+
+        System.out.println("");
+        System.out.println("Storing properties for nodes whose first value is at the boundaries");
+        populate(lattice, properties, puts, random, new int[] { 12, 20 }, 0, 1, 400);
+        populate(lattice, properties, puts, random, new int[] { 30, 40 }, 22, 23, 400);
+        System.out.println(" - Frontier sizes: " + getFrontierSize(lattice, properties[0]) + ", " + getFrontierSize(lattice, properties[1]));
+        Util.check("Differences", check(lattice, properties, puts));
+
+        System.out.println("");
+        System.out.println("Storing properties for nodes that imply many nodes");
+        put(lattice, properties, puts, 0, new int[] { 9, 2, 2, 2 });
+        put(lattice, properties, puts, 0, new int[] { 12, 0, 3, 1 });
+        put(lattice, properties, puts, 1, new int[] { 14, 8, 8, 8 });
+        put(lattice, properties, puts, 1, new int[] { 11, 11, 6, 9 });
+        System.out.println(" - Frontier sizes: " + getFrontierSize(lattice, properties[0]) + ", " + getFrontierSize(lattice, properties[1]));
+        Util.check("Differences", check(lattice, properties, puts));
+
+        System.out.println("");
+        System.out.println("Compacting lattice");
+        lattice.compactify();
+        Util.check("Differences", check(lattice, properties, puts));
+    }
+}
@@ -1,36 +1,49 @@
-/* ******************************************************************************
- * Copyright (c) 2015 Fabian Prasser.
- * All rights reserved. This program and the accompanying materials
- * are made available under the terms of the Eclipse Public License v1.0
- * which accompanies this distribution, and is available at
- * http://www.eclipse.org/legal/epl-v10.html
- * 
- * Contributors:
- * Fabian Prasser - initial API and implementation
- * ****************************************************************************
- */
-package de.linearbits.jhpl.test;
-
-/**
- * Utility class
- * 
- * @author Fabian Prasser
- */
-public class Util {
-
-    /**
-     * Formats a given byte size. Snippet from Stack Overflow
-     * Link: https://stackoverflow.com/a/3758880
-     * 
-     * @param bytes
-     * @param si
-     * @return
-     */
-    public static String formatByteCount(long bytes, boolean si) {
-        int unit = si ? 1000 : 1024;
-        if (bytes < unit) return bytes + " B";
-        int exp = (int) (Math.log(bytes) / Math.log(unit));
-        String pre = (si ? "kMGTPE" : "KMGTPE").charAt(exp-1) + (si ? "" : "i");
-        return String.format("%.1f %sB", bytes / Math.pow(unit, exp), pre);
-    }
-}
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl.test;
+
+/**
+ * Utility class
+ * 
+ * @author Fabian Prasser
+ */
+public class Util {
+
+    /**
+     * Prints the number of errors found by a check. Throws an exception, if there are any.
+     * 
+     * @param label
+     * @param errors
+     */
+    public static void check(String label, long errors) {
+        System.out.println(" - " + label + ": " + errors);
+        if (errors != 0) {
+            throw new IllegalStateException(label + ": " + errors);
+        }
+    }
+
+    /**
+     * Formats a given byte size. Snippet from Stack Overflow
+     * Link: https://stackoverflow.com/a/3758880
+     * 
+     * @param bytes
+     * @param si
+     * @return
+     */
+    public static String formatByteCount(long bytes, boolean si) {
+        int unit = si ? 1000 : 1024;
+        if (bytes < unit) return bytes + " B";
+        int exp = (int) (Math.log(bytes) / Math.log(unit));
+        String pre = (si ? "kMGTPE" : "KMGTPE").charAt(exp-1) + (si ? "" : "i");
+        return String.format("%.1f %sB", bytes / Math.pow(unit, exp), pre);
+    }
+}